@@ -0,0 +1,163 @@
+package Comum;
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Cache persistente expressão -> resultado, em um arquivo mapeado em memória,
+ * que sobrevive a reinícios do servidor.
+ *
+ * Tabela hash de endereçamento aberto (sondagem linear) com slots de 32 bytes:
+ *   [chave 8][chave2 8][valor 8][verificação 8]
+ * - chave/chave2: dois hashes de 64 bits independentes do texto da expressão
+ * - valor: bits do double resultante
+ * - verificação: mistura de chave, chave2 e valor; publicada por último
+ *
+ * Inserção reserva o slot com CAS na chave (0 = livre) e grava a verificação
+ * por último. Leituras não usam lock: um slot só vale se a verificação bate,
+ * o que também descarta slots pela metade deixados por uma queda do processo.
+ * Abrir um arquivo existente só confere o cabeçalho (tempo constante, sem varredura).
+ *
+ * Servidores de semânticas diferentes (ex.: double no socket, int no RMI) podem
+ * dividir o mesmo arquivo: o domínio entra como semente dos dois hashes, então
+ * a mesma expressão ocupa chaves diferentes em cada domínio.
+ *
+ * Apenas resultados válidos são guardados; erros são sempre recalculados.
+ */
+public class CacheResultados implements Closeable {
+
+    private static final long MAGICO = 0x43414c4343414332L; // "CALCCAC2"
+    private static final int CABECALHO = 64;                // [mágico][slots]
+    private static final int TAMANHO_SLOT = 32;
+    /** Maior capacidade cujo arquivo cabe num único mapeamento (até 2 GB). */
+    public static final int SLOTS_MAXIMO = 1 << 25;
+    private static final int SONDAGEM_MAXIMA = 32;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel arquivo;
+    private final MappedByteBuffer mapa;
+    private final int slots;
+    private final long dominio;
+
+    /**
+     * Abre (ou cria) o cache. {@code dominio} separa resultados de semânticas
+     * diferentes no mesmo arquivo; um arquivo com outra capacidade é recriado vazio.
+     */
+    public CacheResultados(Path caminho, int slots, long dominio) throws IOException {
+        if (Integer.bitCount(slots) != 1) throw new IllegalArgumentException("slots deve ser potencia de 2");
+        if (slots > SLOTS_MAXIMO) throw new IllegalArgumentException("slots deve ser no maximo " + SLOTS_MAXIMO);
+        this.slots = slots;
+        this.dominio = dominio;
+        long tamanho = CABECALHO + (long) slots * TAMANHO_SLOT;
+        arquivo = FileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean valido = arquivo.size() == tamanho;
+        mapa = arquivo.map(FileChannel.MapMode.READ_WRITE, 0, tamanho);
+        mapa.order(ByteOrder.nativeOrder());
+        valido = valido
+                && (long) LONGS.getAcquire(mapa, 0) == MAGICO
+                && mapa.getLong(8) == slots;
+        if (!valido) {
+            LONGS.setRelease(mapa, 0, 0L);
+            for (long off = CABECALHO; off < tamanho; off += 8) mapa.putLong((int) off, 0L);
+            mapa.putLong(8, slots);
+            LONGS.setRelease(mapa, 0, MAGICO);
+        }
+    }
+
+    /**
+     * Cache configurado pelas propriedades de sistema, ou null se desativado:
+     *   calc.cache.arquivo  arquivo do cache (sem a propriedade, não há cache)
+     *   calc.cache.slots    capacidade em slots (potência de 2, até SLOTS_MAXIMO) [1048576]
+     */
+    public static CacheResultados doSistema(long dominio) {
+        String nome = System.getProperty("calc.cache.arquivo");
+        if (nome == null || nome.isEmpty()) return null;
+        try {
+            return new CacheResultados(Paths.get(nome), Integer.getInteger("calc.cache.slots", 1 << 20), dominio);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cache de resultados desativado: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Procura a expressão; devolve o resultado guardado ou {@code ausente}. */
+    public double buscar(String expressao, double ausente) {
+        long chave = hash(expressao, 0xcbf29ce484222325L ^ dominio);
+        long chave2 = hash2(expressao, dominio);
+        int i = (int) (chave & (slots - 1));
+        for (int n = 0; n < SONDAGEM_MAXIMA; n++, i = (i + 1) & (slots - 1)) {
+            int off = CABECALHO + i * TAMANHO_SLOT;
+            long k = (long) LONGS.getAcquire(mapa, off);
+            if (k == 0) return ausente;
+            if (k != chave) continue;
+            long verificacao = (long) LONGS.getAcquire(mapa, off + 24);
+            long k2 = mapa.getLong(off + 8);
+            long valor = mapa.getLong(off + 16);
+            if (k2 == chave2 && verificacao == verificacao(chave, k2, valor)) {
+                return Double.longBitsToDouble(valor);
+            }
+            // mesma chave com outro texto, ou slot ainda sendo gravado: continua sondando
+        }
+        return ausente;
+    }
+
+    /**
+     * Guarda o resultado; ignora silenciosamente se a vizinhança da chave estiver cheia.
+     * NaN não é guardado (é o valor usado como "ausente" pelos servidores).
+     */
+    public void guardar(String expressao, double resultado) {
+        if (Double.isNaN(resultado)) return;
+        long chave = hash(expressao, 0xcbf29ce484222325L ^ dominio);
+        long chave2 = hash2(expressao, dominio);
+        long valor = Double.doubleToRawLongBits(resultado);
+        int i = (int) (chave & (slots - 1));
+        for (int n = 0; n < SONDAGEM_MAXIMA; n++, i = (i + 1) & (slots - 1)) {
+            int off = CABECALHO + i * TAMANHO_SLOT;
+            long k = (long) LONGS.getAcquire(mapa, off);
+            if (k == chave && mapa.getLong(off + 8) == chave2) return; // já presente (ou em gravação)
+            if (k == 0 && LONGS.compareAndSet(mapa, off, 0L, chave)) {
+                mapa.putLong(off + 8, chave2);
+                mapa.putLong(off + 16, valor);
+                LONGS.setRelease(mapa, off + 24, verificacao(chave, chave2, valor));
+                return;
+            }
+        }
+    }
+
+    // FNV-1a 64 bits sobre os chars, com base configurável; nunca devolve 0 (slot livre)
+    private static long hash(String s, long base) {
+        long h = base;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    // Hash polinomial independente do FNV, com finalizador do splitmix64
+    private static long hash2(String s, long base) {
+        long h = base ^ s.length();
+        for (int i = 0; i < s.length(); i++) h = h * 0x9e3779b97f4a7c15L + s.charAt(i);
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    private static long verificacao(long chave, long chave2, long valor) {
+        long h = chave * 0x9e3779b97f4a7c15L;
+        h = Long.rotateLeft(h ^ chave2, 31) * 0xbf58476d1ce4e5b9L;
+        h = Long.rotateLeft(h ^ valor, 27) * 0x94d049bb133111ebL;
+        return h == 0 ? 1 : h;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapa.force();
+        arquivo.close();
+    }
+}
@@ -0,0 +1,163 @@
+package Comum;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Corpus de expressões reais, para aquecer o servidor antes de atender.
+ *
+ * Captura: com -Dcalc.corpus.captura=<arquivo>, 1 a cada calc.corpus.amostragem
+ * expressões recebidas (padrão 100) é enfileirada sem bloquear e gravada no
+ * arquivo por uma thread de fundo, até o arquivo ter calc.corpus.maximo linhas
+ * (padrão 10000), contando as já gravadas por execuções anteriores.
+ *
+ * Aquecimento: com -Dcalc.aquecimento.corpus=<arquivo>, o servidor reavalia o
+ * corpus em ciclo antes de aceitar conexões / se registrar, até
+ * calc.aquecimento.ms (padrão 5000) ou calc.aquecimento.iteracoes (padrão 20000),
+ * o que vier primeiro. Antes, uma única passada pelo caminho normal (com cache)
+ * preenche o cache de resultados, se houver; o ciclo em si usa um avaliador sem
+ * cache, para que tokenização, shunting-yard e RPN de fato rodem e sejam
+ * compilados pelo JIT mesmo com o cache já cheio de uma execução anterior.
+ */
+public class CorpusExpressoes {
+
+    private static CorpusExpressoes captura;
+    private static boolean capturaIniciada = false;
+
+    private final int amostragem;
+    private final int maximo;
+    private final AtomicInteger aceitas = new AtomicInteger();
+    private final BlockingQueue<String> fila = new ArrayBlockingQueue<>(1024);
+    private final BufferedWriter saida;
+    private volatile boolean pausada = false;
+
+    private CorpusExpressoes(Path arquivo, int amostragem, int maximo) throws IOException {
+        this.amostragem = Math.max(1, amostragem);
+        this.maximo = maximo;
+        aceitas.set(contarLinhas(arquivo));
+        this.saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        Thread escritora = new Thread(this::escrever, "corpus-captura");
+        escritora.setDaemon(true);
+        escritora.start();
+    }
+
+    // Linhas já gravadas (o arquivo é aberto em modo de acréscimo)
+    private static int contarLinhas(Path arquivo) throws IOException {
+        if (!Files.exists(arquivo)) return 0;
+        int linhas = 0;
+        byte[] bloco = new byte[8192];
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            for (int n; (n = in.read(bloco)) > 0; ) {
+                for (int i = 0; i < n; i++) if (bloco[i] == '\n') linhas++;
+            }
+        }
+        return linhas;
+    }
+
+    /** Captura configurada pelas propriedades de sistema, ou null se desativada. */
+    public static synchronized CorpusExpressoes capturaDoSistema() {
+        if (!capturaIniciada) {
+            capturaIniciada = true;
+            String nome = System.getProperty("calc.corpus.captura");
+            if (nome != null && !nome.isEmpty()) {
+                try {
+                    captura = new CorpusExpressoes(Paths.get(nome),
+                            Integer.getInteger("calc.corpus.amostragem", 100),
+                            Integer.getInteger("calc.corpus.maximo", 10000));
+                } catch (IOException e) {
+                    System.err.println("Captura de corpus desativada: " + e.getMessage());
+                }
+            }
+        }
+        return captura;
+    }
+
+    /** Amostra a expressão para o corpus; nunca bloqueia quem atende a requisição. */
+    public void registrar(String expressao) {
+        if (pausada || expressao == null || expressao.indexOf('\n') >= 0) return;
+        if (amostragem > 1 && ThreadLocalRandom.current().nextInt(amostragem) != 0) return;
+        if (aceitas.get() >= maximo) return;
+        if (fila.offer(expressao)) aceitas.incrementAndGet();
+    }
+
+    private void escrever() {
+        try {
+            while (true) {
+                String expressao = fila.take();
+                saida.write(expressao);
+                saida.newLine();
+                if (fila.isEmpty()) saida.flush();
+            }
+        } catch (InterruptedException | IOException e) {
+            System.err.println("Captura de corpus interrompida: " + e.getMessage());
+        }
+    }
+
+    // ===== Aquecimento =====
+
+    /**
+     * Se calc.aquecimento.corpus estiver definido, passa cada expressão uma vez por
+     * {@code preencherCache} (o caminho normal, com cache) e depois reavalia o corpus
+     * em ciclo com {@code avaliador}, que não deve consultar o cache. Exceções de
+     * expressões inválidas são ignoradas; informa quanto tempo levou.
+     */
+    public static void aquecer(String servidor, Consumer<String> preencherCache, Consumer<String> avaliador) {
+        String nome = System.getProperty("calc.aquecimento.corpus");
+        if (nome != null && !nome.isEmpty()) {
+            try {
+                List<String> corpus = new ArrayList<>();
+                for (String linha : Files.readAllLines(Paths.get(nome), StandardCharsets.UTF_8)) {
+                    if (!linha.isBlank()) corpus.add(linha);
+                }
+                aquecer(servidor, corpus, preencherCache, avaliador,
+                        Long.getLong("calc.aquecimento.ms", 5000),
+                        Integer.getInteger("calc.aquecimento.iteracoes", 20000));
+            } catch (IOException e) {
+                System.err.println(servidor + ": aquecimento ignorado (" + e.getMessage() + ")");
+            }
+        }
+    }
+
+    /** Informa que o servidor passou a atender, em relação ao início da JVM. */
+    public static void pronto(String servidor) {
+        long desdeInicio = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println(servidor + ": pronto " + desdeInicio + " ms apos o inicio da JVM");
+    }
+
+    static void aquecer(String servidor, List<String> corpus, Consumer<String> preencherCache, Consumer<String> avaliador,
+                        long limiteMs, int limiteIteracoes) {
+        if (corpus.isEmpty()) return;
+        CorpusExpressoes c = capturaDoSistema();
+        if (c != null) c.pausada = true; // não recaptura o próprio corpus
+        long inicio = System.nanoTime();
+        long prazo = inicio + limiteMs * 1_000_000L;
+        int iteracoes = 0, erros = 0;
+        try {
+            for (String expressao : corpus) {
+                try {
+                    preencherCache.accept(expressao);
+                } catch (Exception e) {
+                    // inválida: contada no ciclo abaixo
+                }
+            }
+            while (iteracoes < limiteIteracoes && System.nanoTime() < prazo) {
+                try {
+                    avaliador.accept(corpus.get(iteracoes % corpus.size()));
+                } catch (Exception e) {
+                    erros++;
+                }
+                iteracoes++;
+            }
+        } finally {
+            if (c != null) c.pausada = false;
+        }
+        System.out.printf(Locale.ROOT, "%s: aquecimento com %d avaliacoes de %d expressoes (%d invalidas) em %.1f ms%n",
+                servidor, iteracoes, corpus.size(), erros, (System.nanoTime() - inicio) / 1e6);
+    }
+}
@@ -0,0 +1,69 @@
+package Comum;
+import jdk.jfr.*;
+
+/**
+ * Eventos JFR de fase de requisição, emitidos pelos servidores e clientes da Calculadora.
+ *
+ * Todos carregam opcode, tamanho da expressão (chars/bytes) e quantidade de tokens
+ * (0 quando ainda não conhecidos). Uso:
+ *
+ *   EventosFase.Tokenizacao ev = new EventosFase.Tokenizacao();
+ *   ev.begin();
+ *   ... fase ...
+ *   if (ev.shouldCommit()) { ev.preencher(5, expr.length(), tokens.size()); ev.commit(); }
+ *
+ * Com a gravação desligada o JIT elimina o evento; o custo é praticamente zero.
+ * Perfil de gravação: jfr/calculadora.jfc; resumo: jfr/resumir_fases.sh.
+ */
+public final class EventosFase {
+
+    private EventosFase() { }
+
+    @Category({ "Calculadora", "Fases" })
+    @StackTrace(false)
+    public abstract static class Fase extends Event {
+        @Label("Opcode")
+        public int opcode;
+
+        @Label("Tamanho da expressao")
+        public int tamanhoExpressao;
+
+        @Label("Tokens")
+        public int tokens;
+
+        public void preencher(int opcode, int tamanhoExpressao, int tokens) {
+            this.opcode = opcode;
+            this.tamanhoExpressao = tamanhoExpressao;
+            this.tokens = tokens;
+        }
+    }
+
+    @Name("calculadora.LeituraSocket")
+    @Label("Leitura do socket")
+    public static final class LeituraSocket extends Fase { }
+
+    @Name("calculadora.Tokenizacao")
+    @Label("Tokenizacao")
+    public static final class Tokenizacao extends Fase { }
+
+    @Name("calculadora.ShuntingYard")
+    @Label("Shunting-yard")
+    public static final class ShuntingYard extends Fase { }
+
+    @Name("calculadora.AvaliacaoRPN")
+    @Label("Avaliacao RPN")
+    public static final class AvaliacaoRPN extends Fase { }
+
+    @Name("calculadora.Formatacao")
+    @Label("Formatacao do resultado")
+    public static final class Formatacao extends Fase { }
+
+    @Name("calculadora.EscritaSocket")
+    @Label("Escrita no socket")
+    public static final class EscritaSocket extends Fase { }
+
+    /** Uma chamada remota do laço da Abordagem 1 no cliente (opcode do operador). */
+    @Name("calculadora.ChamadaRemota")
+    @Label("Chamada remota (Abordagem 1)")
+    public static final class ChamadaRemota extends Fase { }
+}
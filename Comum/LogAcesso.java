@@ -0,0 +1,262 @@
+package Comum;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log de acesso assíncrono dos servidores da Calculadora.
+ *
+ * As threads que atendem requisições apenas gravam um registro de tamanho fixo
+ * (seq, op, latência, tamanho, resultado, origem) num buffer circular sem lock
+ * (fila MPSC limitada com número de sequência por posição). Uma thread de fundo
+ * drena os registros em lotes, formata cada um como uma linha "chave=valor" e
+ * grava no arquivo via FileChannel, rotacionando ao atingir o tamanho limite.
+ *
+ * Se o buffer estiver cheio o registro é descartado e contado; nunca bloqueia
+ * quem atende a requisição.
+ *
+ * Configuração (propriedades de sistema):
+ *   calc.log.arquivo            arquivo de log (vazio desativa)  [calculadora-acesso.log]
+ *   calc.log.desativado         true desliga o log de acesso     [false]
+ *   calc.log.amostragem         registra 1 a cada N requisições  [1]
+ *   calc.log.capacidade         registros no buffer (potência de 2) [8192]
+ *   calc.log.rotacao.bytes      tamanho que dispara a rotação    [10485760]
+ *   calc.log.rotacao.arquivos   arquivos antigos mantidos (.1, .2, ...) [5]
+ */
+public class LogAcesso implements Closeable {
+
+    public static final int OK = 0;
+    public static final int ERRO = 1;
+
+    private static final int CAMPOS = 7; // ts, seq, op, latencia, tamanho, resultado, origem
+    private static final int LOTE = 256;
+
+    private static LogAcesso padrao;
+
+    private final long[] dados;
+    private final AtomicLongArray sequencias;
+    private final int mascara;
+    private final AtomicLong cauda = new AtomicLong();
+    private long cabeca = 0; // só a thread escritora mexe
+    private final LongAdder descartados = new LongAdder();
+    private final int amostragem;
+
+    private final Path arquivo;
+    private final long limiteRotacao;
+    private final int arquivosRotacao;
+    private FileChannel canal;
+    private final ByteBuffer saida = ByteBuffer.allocateDirect(LOTE * 128);
+    private final Thread escritora;
+    private volatile boolean ativo = true;
+    private long descartadosInformados = 0;
+
+    public LogAcesso(Path arquivo, int capacidade, int amostragem, long limiteRotacao, int arquivosRotacao) throws IOException {
+        if (Integer.bitCount(capacidade) != 1) throw new IllegalArgumentException("capacidade deve ser potencia de 2");
+        this.dados = new long[capacidade * CAMPOS];
+        this.sequencias = new AtomicLongArray(capacidade);
+        for (int i = 0; i < capacidade; i++) sequencias.set(i, i);
+        this.mascara = capacidade - 1;
+        this.amostragem = Math.max(1, amostragem);
+        this.arquivo = arquivo;
+        this.limiteRotacao = limiteRotacao;
+        this.arquivosRotacao = arquivosRotacao;
+        this.canal = abrir();
+        this.escritora = new Thread(this::escrever, "log-acesso");
+        this.escritora.setDaemon(true);
+        this.escritora.start();
+    }
+
+    /**
+     * Instância compartilhada pelos servidores do processo, configurada pelas
+     * propriedades de sistema. Devolve null se o log estiver desativado.
+     */
+    public static synchronized LogAcesso padrao() {
+        if (padrao == null) {
+            if (Boolean.getBoolean("calc.log.desativado")) return null;
+            String nome = System.getProperty("calc.log.arquivo", "calculadora-acesso.log");
+            if (nome.isEmpty()) return null;
+            try {
+                padrao = new LogAcesso(Paths.get(nome),
+                        Integer.getInteger("calc.log.capacidade", 8192),
+                        Integer.getInteger("calc.log.amostragem", 1),
+                        Long.getLong("calc.log.rotacao.bytes", 10L * 1024 * 1024),
+                        Integer.getInteger("calc.log.rotacao.arquivos", 5));
+            } catch (IOException e) {
+                System.err.println("Log de acesso desativado: " + e.getMessage());
+                return null;
+            }
+            LogAcesso log = padrao;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try { log.close(); } catch (IOException ignored) {}
+            }));
+        }
+        return padrao;
+    }
+
+    /** Origem compacta: IPv4 nos 32 bits altos, porta nos 16 baixos (0 se desconhecida). */
+    public static long origem(SocketAddress endereco) {
+        if (!(endereco instanceof InetSocketAddress)) return 0;
+        InetSocketAddress isa = (InetSocketAddress) endereco;
+        byte[] ip = isa.getAddress() != null ? isa.getAddress().getAddress() : null;
+        if (ip == null || ip.length != 4) return isa.getPort();
+        long v = ((ip[0] & 0xffL) << 24) | ((ip[1] & 0xffL) << 16) | ((ip[2] & 0xffL) << 8) | (ip[3] & 0xffL);
+        return (v << 16) | isa.getPort();
+    }
+
+    /**
+     * Origem a partir do host devolvido por RemoteServer.getClientHost() (sem porta);
+     * 0 se não for um endereço.
+     */
+    public static long origem(String host) {
+        try {
+            return origem(new InetSocketAddress(InetAddress.getByName(host), 0));
+        } catch (UnknownHostException e) {
+            return 0;
+        }
+    }
+
+    /** Enfileira um registro; não bloqueia. Devolve false se não amostrado ou descartado. */
+    public boolean registrar(long seq, int op, long latenciaNs, int tamanho, int resultado, long origem) {
+        if (amostragem > 1 && ThreadLocalRandom.current().nextInt(amostragem) != 0) return false;
+        long pos = cauda.get();
+        int idx;
+        while (true) {
+            idx = (int) (pos & mascara);
+            long dif = sequencias.getAcquire(idx) - pos;
+            if (dif == 0) {
+                if (cauda.weakCompareAndSetVolatile(pos, pos + 1)) break;
+                pos = cauda.get();
+            } else if (dif < 0) {
+                descartados.increment(); // buffer cheio
+                return false;
+            } else {
+                pos = cauda.get();
+            }
+        }
+        int base = idx * CAMPOS;
+        dados[base] = System.currentTimeMillis();
+        dados[base + 1] = seq;
+        dados[base + 2] = op;
+        dados[base + 3] = latenciaNs;
+        dados[base + 4] = tamanho;
+        dados[base + 5] = resultado;
+        dados[base + 6] = origem;
+        sequencias.setRelease(idx, pos + 1); // publica
+        return true;
+    }
+
+    public long getDescartados() { return descartados.sum(); }
+
+    // ===== Thread escritora =====
+
+    private void escrever() {
+        while (ativo) {
+            int n = drenar();
+            if (n == 0) LockSupport.parkNanos(1_000_000);
+        }
+        while (drenar() > 0) { } // resto do buffer no encerramento
+    }
+
+    private int drenar() {
+        int n = 0;
+        saida.clear();
+        while (n < LOTE) {
+            int idx = (int) (cabeca & mascara);
+            if (sequencias.getAcquire(idx) != cabeca + 1) break;
+            formatar(idx * CAMPOS);
+            sequencias.setRelease(idx, cabeca + mascara + 1); // libera a posição
+            cabeca++;
+            n++;
+        }
+        long desc = descartados.sum();
+        if (desc != descartadosInformados) {
+            escreverTexto("descartados=");
+            escreverNumero(desc);
+            saida.put((byte) '\n');
+            descartadosInformados = desc;
+        }
+        if (saida.position() > 0) {
+            saida.flip();
+            try {
+                while (saida.hasRemaining()) canal.write(saida);
+                if (canal.size() >= limiteRotacao) rotacionar();
+            } catch (IOException e) {
+                System.err.println("Falha ao gravar log de acesso: " + e.getMessage());
+            }
+        }
+        return n;
+    }
+
+    private void formatar(int base) {
+        escreverTexto("ts=");
+        escreverNumero(dados[base]);
+        escreverTexto(" seq=");
+        escreverNumero(dados[base + 1]);
+        escreverTexto(" op=");
+        escreverNumero(dados[base + 2]);
+        escreverTexto(" lat_ns=");
+        escreverNumero(dados[base + 3]);
+        escreverTexto(" tam=");
+        escreverNumero(dados[base + 4]);
+        escreverTexto(dados[base + 5] == OK ? " res=ok" : " res=erro");
+        long origem = dados[base + 6];
+        if (origem != 0) {
+            escreverTexto(" origem=");
+            long ip = origem >>> 16;
+            escreverNumero((ip >>> 24) & 0xff);
+            saida.put((byte) '.');
+            escreverNumero((ip >>> 16) & 0xff);
+            saida.put((byte) '.');
+            escreverNumero((ip >>> 8) & 0xff);
+            saida.put((byte) '.');
+            escreverNumero(ip & 0xff);
+            if ((origem & 0xffff) != 0) { // RMI não informa a porta do cliente
+                saida.put((byte) ':');
+                escreverNumero(origem & 0xffff);
+            }
+        }
+        saida.put((byte) '\n');
+    }
+
+    private void escreverTexto(String s) {
+        for (int i = 0; i < s.length(); i++) saida.put((byte) s.charAt(i));
+    }
+
+    private void escreverNumero(long v) {
+        if (v < 0) { saida.put((byte) '-'); v = -v; }
+        long div = 1;
+        while (v / div >= 10) div *= 10;
+        for (; div > 0; div /= 10) saida.put((byte) ('0' + (v / div) % 10));
+    }
+
+    private FileChannel abrir() throws IOException {
+        return FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void rotacionar() throws IOException {
+        canal.close();
+        for (int i = arquivosRotacao - 1; i >= 1; i--) {
+            Path de = Paths.get(arquivo + "." + i);
+            if (Files.exists(de)) Files.move(de, Paths.get(arquivo + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (arquivosRotacao > 0) Files.move(arquivo, Paths.get(arquivo + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        else Files.delete(arquivo);
+        canal = abrir();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ativo = false;
+        try {
+            escritora.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+    }
+}
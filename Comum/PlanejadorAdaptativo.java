@@ -0,0 +1,287 @@
+package Comum;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Planejador adaptativo: escolhe, para cada expressão, entre a Abordagem 1
+ * (uma chamada remota por operador), a Abordagem 2 (uma chamada com a expressão
+ * inteira) ou uma abordagem híbrida (subárvores pequenas dobradas localmente e o
+ * restante enviado ao servidor em uma única chamada).
+ *
+ * Estimativas mantidas em tempo de execução:
+ * - custo de uma chamada remota = rtt + custoServidorPorToken * tokens
+ *   (regressão linear com decaimento sobre todas as chamadas medidas)
+ * - custo de parse local por token (média móvel exponencial)
+ * - custo de uma operação aritmética local (média móvel exponencial)
+ *
+ * Usado pelos dois clientes (Socket e RMI); a aritmética de cada um é passada
+ * via {@link Aritmetica}.
+ */
+public class PlanejadorAdaptativo {
+
+    public enum Estrategia { ABORDAGEM1, ABORDAGEM2, HIBRIDA }
+
+    /** Operações aritméticas do lado cliente usadas para dobrar subárvores. */
+    public interface Aritmetica<T> {
+        T literal(String token);
+        T aplicar(String operador, T a, T b);
+        /** Texto aceito pelo tokenizador do servidor (sem notação científica). */
+        String formatar(T valor);
+    }
+
+    /** Decisão tomada para uma expressão. */
+    public static final class Plano {
+        private final Estrategia estrategia;
+        private final List<String> rpn;
+        private final int tokens;
+        private final int operadores;
+        private final int limiteDobra;
+        private final int tokensRestantes;
+        private final double custoPrevistoNs;
+
+        Plano(Estrategia estrategia, List<String> rpn, int tokens, int operadores,
+              int limiteDobra, int tokensRestantes, double custoPrevistoNs) {
+            this.estrategia = estrategia;
+            this.rpn = rpn;
+            this.tokens = tokens;
+            this.operadores = operadores;
+            this.limiteDobra = limiteDobra;
+            this.tokensRestantes = tokensRestantes;
+            this.custoPrevistoNs = custoPrevistoNs;
+        }
+
+        public Estrategia getEstrategia() { return estrategia; }
+        /** RPN já calculada (null quando a Abordagem 2 foi escolhida sem parse local). */
+        public List<String> getRpn() { return rpn; }
+        public int getTokens() { return tokens; }
+        public int getOperadores() { return operadores; }
+        /** Subárvores com até este número de operadores são dobradas localmente (HIBRIDA). */
+        public int getLimiteDobra() { return limiteDobra; }
+        /** Tokens enviados ao servidor na chamada em lote (HIBRIDA). */
+        public int getTokensRestantes() { return tokensRestantes; }
+        public double getCustoPrevistoNs() { return custoPrevistoNs; }
+    }
+
+    private static final double ALFA = 0.2;          // peso das médias móveis
+    private static final double DECAIMENTO = 0.98;   // esquecimento da regressão de chamadas remotas
+
+    // Regressão tempo(ns) = rtt + custoPorToken * tokens, com somas ponderadas.
+    // Semeada com um ponto a priori (~200us de RTT em loopback, 2us por token).
+    private double somaPeso = 2, somaX = 1 + 10, somaY = 202_000 + 220_000;
+    private double somaXX = 1 + 100, somaXY = 202_000 + 2_200_000;
+
+    private double parseLocalPorTokenNs = 500;
+    private double operacaoLocalNs = 100;
+
+    // Métricas
+    private final long[] decisoes = new long[Estrategia.values().length];
+    private long medicoes = 0;
+    private double erroRelativoMedio = 0;   // média de |previsto - real| / real
+    private double erroRelativoRecente = 0; // média móvel exponencial do mesmo erro
+
+    /**
+     * Escolhe a estratégia mais barata para a expressão.
+     * Uma varredura barata conta tokens e operadores; o parse local só é feito
+     * se a Abordagem 1 ou a híbrida puderem ser mais baratas que a Abordagem 2.
+     */
+    public synchronized Plano planejar(String expressao, Function<String, List<String>> paraRpn) {
+        int[] contagem = contarTokens(expressao);
+        int n = contagem[0];
+        int ops = contagem[1];
+
+        double rtt = rtt();
+        double porToken = custoServidorPorToken();
+        double custoA2 = rtt + porToken * n;
+        double parse = parseLocalPorTokenNs * n;
+        double custoA1 = parse + ops * rtt;
+        double limiteInferiorHibrida = parse + rtt + porToken;
+
+        if (ops <= 1 || (custoA1 >= custoA2 && limiteInferiorHibrida >= custoA2)) {
+            return decidir(new Plano(Estrategia.ABORDAGEM2, null, n, ops, 0, n, custoA2));
+        }
+
+        long inicio = System.nanoTime();
+        List<String> rpn = paraRpn.apply(expressao);
+        long parseNs = System.nanoTime() - inicio;
+        if (n > 0) {
+            parseLocalPorTokenNs += ALFA * ((double) parseNs / n - parseLocalPorTokenNs);
+        }
+        ops = contarOperadores(rpn);
+
+        // A partir daqui o parse já foi pago; compara apenas o custo restante.
+        Plano melhor = new Plano(Estrategia.ABORDAGEM2, rpn, n, ops, 0, n, parseNs + custoA2);
+        double restanteA1 = ops * rtt;
+        if (parseNs + restanteA1 < melhor.custoPrevistoNs) {
+            melhor = new Plano(Estrategia.ABORDAGEM1, rpn, n, ops, 0, 0, parseNs + restanteA1);
+        }
+        for (int limite = 1; limite < ops; limite <<= 1) {
+            int[] r = simularDobra(rpn, limite);
+            double custo = parseNs + operacaoLocalNs * r[1] + rtt + porToken * r[0];
+            if (custo < melhor.custoPrevistoNs) {
+                melhor = new Plano(Estrategia.HIBRIDA, rpn, n, ops, limite, r[0], custo);
+            }
+        }
+        return decidir(melhor);
+    }
+
+    private Plano decidir(Plano plano) {
+        decisoes[plano.estrategia.ordinal()]++;
+        return plano;
+    }
+
+    /**
+     * Dobra localmente as subárvores com até {@code plano.getLimiteDobra()} operadores
+     * e devolve a expressão infixa restante, a ser enviada em uma única chamada.
+     */
+    public <T> String reduzir(Plano plano, Aritmetica<T> aritmetica) {
+        long inicio = System.nanoTime();
+        Deque<Object[]> pilha = new ArrayDeque<>(); // {valor ou texto, operadores, dobrado?}
+        int dobrados = 0;
+        for (String tok : plano.rpn) {
+            if (!ehOperador(tok)) {
+                pilha.push(new Object[] { aritmetica.literal(tok), 0, Boolean.TRUE });
+                continue;
+            }
+            if (pilha.size() < 2) throw new IllegalArgumentException("RPN invalido");
+            Object[] b = pilha.pop();
+            Object[] a = pilha.pop();
+            int ops = (Integer) a[1] + (Integer) b[1] + 1;
+            if (ops <= plano.limiteDobra) {
+                @SuppressWarnings("unchecked") T va = (T) a[0];
+                @SuppressWarnings("unchecked") T vb = (T) b[0];
+                pilha.push(new Object[] { aritmetica.aplicar(tok, va, vb), ops, Boolean.TRUE });
+                dobrados++;
+            } else {
+                String texto = "(" + comoTexto(a, aritmetica) + " " + tok + " " + comoTexto(b, aritmetica) + ")";
+                pilha.push(new Object[] { texto, ops, Boolean.FALSE });
+            }
+        }
+        if (pilha.size() != 1) throw new IllegalArgumentException("RPN produziu mais de um valor");
+        String resultado = comoTexto(pilha.pop(), aritmetica);
+        if (dobrados > 0) {
+            synchronized (this) {
+                double porOperacao = (double) (System.nanoTime() - inicio) / dobrados;
+                operacaoLocalNs += ALFA * (porOperacao - operacaoLocalNs);
+            }
+        }
+        return resultado;
+    }
+
+    private static <T> String comoTexto(Object[] entrada, Aritmetica<T> aritmetica) {
+        if (entrada[2] == Boolean.FALSE) return (String) entrada[0];
+        @SuppressWarnings("unchecked") T valor = (T) entrada[0];
+        return aritmetica.formatar(valor);
+    }
+
+    /** Registra o tempo de uma chamada remota que enviou {@code tokens} tokens. */
+    public synchronized void registrarChamada(int tokens, long ns) {
+        somaPeso = somaPeso * DECAIMENTO + 1;
+        somaX = somaX * DECAIMENTO + tokens;
+        somaY = somaY * DECAIMENTO + ns;
+        somaXX = somaXX * DECAIMENTO + (double) tokens * tokens;
+        somaXY = somaXY * DECAIMENTO + (double) tokens * ns;
+    }
+
+    /** Registra o tempo total real de um plano executado, para medir o erro de previsão. */
+    public synchronized void registrarResultado(Plano plano, long realNs) {
+        if (realNs <= 0) return;
+        double erro = Math.abs(plano.custoPrevistoNs - realNs) / realNs;
+        medicoes++;
+        erroRelativoMedio += (erro - erroRelativoMedio) / medicoes;
+        erroRelativoRecente = medicoes == 1 ? erro : erroRelativoRecente + ALFA * (erro - erroRelativoRecente);
+    }
+
+    public synchronized double rtt() {
+        double r = somaY / somaPeso - custoServidorPorToken() * (somaX / somaPeso);
+        return Math.max(0, r);
+    }
+
+    public synchronized double custoServidorPorToken() {
+        double var = somaXX / somaPeso - (somaX / somaPeso) * (somaX / somaPeso);
+        if (var <= 1e-9) return 0;
+        double cov = somaXY / somaPeso - (somaX / somaPeso) * (somaY / somaPeso);
+        return Math.max(0, cov / var);
+    }
+
+    public synchronized long getDecisoes(Estrategia estrategia) { return decisoes[estrategia.ordinal()]; }
+    public synchronized double getErroRelativoMedio() { return erroRelativoMedio; }
+    public synchronized double getErroRelativoRecente() { return erroRelativoRecente; }
+
+    public synchronized String metricas() {
+        return String.format(Locale.ROOT,
+                "Decisoes: A1=%d A2=%d HIBRIDA=%d%n" +
+                "Estimativas: rtt=%.1fus servidor=%.1fns/token parse=%.1fns/token operacaoLocal=%.1fns%n" +
+                "Erro de previsao: medio=%.1f%% recente=%.1f%% (%d medicoes)",
+                decisoes[0], decisoes[1], decisoes[2],
+                rtt() / 1000.0, custoServidorPorToken(), parseLocalPorTokenNs, operacaoLocalNs,
+                erroRelativoMedio * 100, erroRelativoRecente * 100, medicoes);
+    }
+
+    // ===== Utilitários =====
+
+    /**
+     * Varredura barata (sem alocar tokens): devolve {tokens, operadores binários}.
+     * '-' conta como operador binário apenas depois de número ou ')'.
+     */
+    public static int[] contarTokens(String s) {
+        int tokens = 0, ops = 0;
+        boolean anteriorOperando = false;
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isDigit(c) || c == '.') {
+                while (i < s.length() && (Character.isDigit(s.charAt(i)) || s.charAt(i) == '.')) i++;
+                tokens++;
+                anteriorOperando = true;
+                continue;
+            }
+            if (c == '+' || c == '*' || c == '/' || (c == '-' && anteriorOperando)) {
+                tokens++;
+                ops++;
+                anteriorOperando = false;
+            } else if (c == '(' || c == ')') {
+                tokens++;
+                anteriorOperando = c == ')';
+            }
+            i++;
+        }
+        return new int[] { tokens, ops };
+    }
+
+    private static boolean ehOperador(String tok) {
+        return tok.equals("+") || tok.equals("-") || tok.equals("*") || tok.equals("/");
+    }
+
+    private static int contarOperadores(List<String> rpn) {
+        int ops = 0;
+        for (String t : rpn) if (ehOperador(t)) ops++;
+        return ops;
+    }
+
+    /** Devolve {tokens restantes na chamada em lote, operadores dobrados localmente}. */
+    private static int[] simularDobra(List<String> rpn, int limite) {
+        int[] ops = new int[rpn.size()];
+        int[] restantes = new int[rpn.size()];
+        int topo = 0, dobrados = 0;
+        for (String tok : rpn) {
+            if (!ehOperador(tok)) {
+                ops[topo] = 0;
+                restantes[topo] = 1;
+                topo++;
+                continue;
+            }
+            if (topo < 2) throw new IllegalArgumentException("RPN invalido");
+            topo--;
+            int o = ops[topo - 1] + ops[topo] + 1;
+            if (o <= limite) {
+                dobrados++;
+                restantes[topo - 1] = 1;
+            } else {
+                // parênteses em volta de cada operação não dobrada
+                restantes[topo - 1] = restantes[topo - 1] + restantes[topo] + 3;
+            }
+            ops[topo - 1] = o;
+        }
+        return new int[] { topo == 1 ? restantes[0] : 0, dobrados };
+    }
+}
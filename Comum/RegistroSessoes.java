@@ -0,0 +1,52 @@
+package Comum;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessões de avaliação incremental abertas em um servidor, por id.
+ *
+ * Limites (propriedades de sistema):
+ *   calc.sessoes.maximo         sessões abertas ao mesmo tempo [1024]
+ *   calc.sessoes.ociosidade.ms  sessão sem uso há mais que isso pode ser descartada [600000]
+ * Ao abrir com o registro cheio, descarta as sessões ociosas; se nenhuma for, recusa.
+ *
+ * Os ids são longs positivos aleatórios (SecureRandom), para que um cliente não
+ * consiga adivinhar o id da sessão de outro a partir do seu.
+ */
+public class RegistroSessoes {
+
+    private final SessaoExpressao.Aritmetica aritmetica;
+    private final int maximo = Integer.getInteger("calc.sessoes.maximo", 1024);
+    private final long ociosidadeMs = Long.getLong("calc.sessoes.ociosidade.ms", 600_000);
+    private final Map<Long, SessaoExpressao> sessoes = new ConcurrentHashMap<>();
+    private final SecureRandom aleatorio = new SecureRandom();
+
+    public RegistroSessoes(SessaoExpressao.Aritmetica aritmetica) {
+        this.aritmetica = aritmetica;
+    }
+
+    /** Cria a sessão e devolve o id; lança IllegalStateException se o limite foi atingido. */
+    public long abrir(String expressao) {
+        if (sessoes.size() >= maximo) {
+            long limite = System.currentTimeMillis() - ociosidadeMs;
+            sessoes.values().removeIf(s -> s.getUltimoAcesso() < limite);
+            if (sessoes.size() >= maximo) throw new IllegalStateException("limite de sessoes atingido (" + maximo + ")");
+        }
+        SessaoExpressao sessao = new SessaoExpressao(expressao, aritmetica);
+        long id;
+        do {
+            id = aleatorio.nextLong() & Long.MAX_VALUE;
+        } while (id == 0 || sessoes.putIfAbsent(id, sessao) != null); // colisão: sorteia outro
+        return id;
+    }
+
+    /** Sessão com o id, ou null se não existe (ou já foi fechada/descartada). */
+    public SessaoExpressao obter(long id) {
+        return sessoes.get(id);
+    }
+
+    public boolean fechar(long id) {
+        return sessoes.remove(id) != null;
+    }
+}
@@ -0,0 +1,46 @@
+package Comum;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Lê uma gravação JFR e imprime, por fase (e por opcode), a quantidade de eventos
+ * e os percentis de duração p50/p90/p99/máx, em microssegundos.
+ *
+ *    java Comum.ResumoFasesJfr gravacao.jfr
+ */
+public class ResumoFasesJfr {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Uso: java Comum.ResumoFasesJfr gravacao.jfr");
+            return;
+        }
+        // "fase op=N" -> durações em ns
+        Map<String, List<Long>> duracoes = new TreeMap<>();
+        for (RecordedEvent ev : RecordingFile.readAllEvents(Paths.get(args[0]))) {
+            String nome = ev.getEventType().getName();
+            if (!nome.startsWith("calculadora.")) continue;
+            String chave = nome.substring("calculadora.".length()) + " op=" + ev.getInt("opcode");
+            duracoes.computeIfAbsent(chave, k -> new ArrayList<>()).add(ev.getDuration().toNanos());
+        }
+        if (duracoes.isEmpty()) {
+            System.out.println("Nenhum evento da Calculadora na gravacao.");
+            return;
+        }
+        System.out.printf(Locale.ROOT, "%-24s %8s %10s %10s %10s %10s%n", "fase", "eventos", "p50(us)", "p90(us)", "p99(us)", "max(us)");
+        for (Map.Entry<String, List<Long>> e : duracoes.entrySet()) {
+            List<Long> d = e.getValue();
+            Collections.sort(d);
+            System.out.printf(Locale.ROOT, "%-24s %8d %10.2f %10.2f %10.2f %10.2f%n", e.getKey(), d.size(),
+                    percentil(d, 0.50), percentil(d, 0.90), percentil(d, 0.99), d.get(d.size() - 1) / 1000.0);
+        }
+    }
+
+    private static double percentil(List<Long> ordenadas, double p) {
+        int i = (int) Math.ceil(p * ordenadas.size()) - 1;
+        return ordenadas.get(Math.max(0, i)) / 1000.0;
+    }
+}
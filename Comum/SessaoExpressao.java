@@ -0,0 +1,335 @@
+package Comum;
+import java.util.*;
+
+/**
+ * Sessão de avaliação incremental: o cliente envia a expressão uma vez e depois
+ * apenas edições de texto (offset, comprimento, substituição).
+ *
+ * A expressão é mantida como árvore sintática em que cada nó guarda o próprio
+ * comprimento, a posição do filho direito (ou do conteúdo dos parênteses)
+ * relativa ao seu início e o valor já calculado da subárvore. Numa edição:
+ * 1) desce da raiz até o nó autodelimitado mais profundo (número ou
+ *    parênteses) que contém o trecho editado;
+ * 2) reinterpreta só o texto novo desse nó; se não formar mais um número /
+ *    grupo entre parênteses, tenta o próximo ancestral autodelimitado (no
+ *    limite, a expressão inteira);
+ * 3) sobe até a raiz ajustando comprimentos/deslocamentos e recalculando os
+ *    valores do caminho; as demais subárvores reaproveitam o valor guardado.
+ * O custo é proporcional ao trecho reinterpretado mais a profundidade do nó.
+ *
+ * O analisador é recursivo: o aninhamento de parênteses é limitado por
+ * calc.expressao.profundidade.maxima (padrão 1000, o mesmo do avaliador em fluxo);
+ * acima disso a expressão é inválida, em vez de estourar a pilha da thread.
+ *
+ * Mesma gramática dos tokenizadores: + - * / com precedência usual e associação
+ * à esquerda, parênteses, e números. {@link Aritmetica#REAL} segue o servidor
+ * socket (double, '-' unário colado ao número); {@link Aritmetica#INTEIRA} segue
+ * o servidor RMI (int, só dígitos).
+ */
+public class SessaoExpressao {
+
+    public enum Aritmetica { REAL, INTEIRA }
+
+    private static final int PROFUNDIDADE_MAXIMA = Integer.getInteger("calc.expressao.profundidade.maxima", 1000);
+
+    private static final class No {
+        char tipo;      // 'n' número, 'p' parênteses, 'b' binário
+        char op;
+        No esq, dir;    // binário: operandos; parênteses: esq = conteúdo
+        int comprimento;
+        int desloc;     // binário: início de dir; parênteses: início do conteúdo (relativos ao nó)
+        double valor;
+        String erro;    // erro aritmético da subárvore (ex.: divisão por zero)
+    }
+
+    private final Aritmetica aritmetica;
+    private final StringBuilder texto;
+    private No raiz;
+    private int inicioRaiz;
+    private String erroSintaxe;
+    private long ultimoAcesso = System.currentTimeMillis();
+
+    // caminho da última descida (reutilizado entre edições)
+    private No[] caminho = new No[64];
+    private int[] inicios = new int[64];
+
+    public SessaoExpressao(String expressao, Aritmetica aritmetica) {
+        this.aritmetica = aritmetica;
+        this.texto = new StringBuilder(expressao);
+        reinterpretarTudo();
+    }
+
+    /** Valor atual; lança ArithmeticException (ex.: divisão por zero) ou IllegalArgumentException (sintaxe). */
+    public synchronized double resultado() {
+        ultimoAcesso = System.currentTimeMillis();
+        if (raiz == null) throw new IllegalArgumentException(erroSintaxe);
+        if (raiz.erro != null) throw new ArithmeticException(raiz.erro);
+        return raiz.valor;
+    }
+
+    public synchronized String getTexto() { return texto.toString(); }
+
+    public synchronized long getUltimoAcesso() { return ultimoAcesso; }
+
+    /** Substitui {@code comprimento} chars a partir de {@code offset} e reavalia incrementalmente. */
+    public synchronized double editar(int offset, int comprimento, String substituicao) {
+        if (offset < 0 || comprimento < 0 || offset + comprimento > texto.length()) {
+            throw new IndexOutOfBoundsException("edicao fora da expressao: offset=" + offset + " comprimento=" + comprimento);
+        }
+        texto.replace(offset, offset + comprimento, substituicao);
+        int delta = substituicao.length() - comprimento;
+        int fimEdicao = offset + comprimento;
+
+        if (raiz == null || offset < inicioRaiz || fimEdicao > inicioRaiz + raiz.comprimento) {
+            reinterpretarTudo();
+            return resultado();
+        }
+
+        // 1) desce guardando o caminho e os inícios absolutos
+        int n = 0;
+        No no = raiz;
+        int ini = inicioRaiz;
+        while (no != null) {
+            if (n == caminho.length) {
+                caminho = Arrays.copyOf(caminho, n * 2);
+                inicios = Arrays.copyOf(inicios, n * 2);
+            }
+            caminho[n] = no;
+            inicios[n] = ini;
+            n++;
+            if (no.tipo == 'b') {
+                if (fimEdicao <= ini + no.esq.comprimento) {
+                    no = no.esq;
+                } else if (offset >= ini + no.desloc) {
+                    ini += no.desloc;
+                    no = no.dir;
+                } else {
+                    break; // edição cruza o operador
+                }
+            } else if (no.tipo == 'p') {
+                int iniConteudo = ini + no.desloc;
+                if (offset >= iniConteudo && fimEdicao <= iniConteudo + no.esq.comprimento) {
+                    ini = iniConteudo;
+                    no = no.esq;
+                } else {
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+
+        // 2) reinterpreta o nó autodelimitado mais profundo que aceitar o texto novo
+        int parentesesAcima = 0; // grupos em caminho[0..i), para o limite de profundidade
+        for (int j = 0; j < n - 1; j++) if (caminho[j].tipo == 'p') parentesesAcima++;
+        for (int i = n - 1; i >= 1; i--) {
+            if (i < n - 1 && caminho[i].tipo == 'p') parentesesAcima--;
+            No alvo = caminho[i];
+            int iniAlvo = inicios[i];
+            boolean contem = alvo.tipo == 'n'
+                    ? offset >= iniAlvo && fimEdicao <= iniAlvo + alvo.comprimento
+                    : alvo.tipo == 'p' && offset > iniAlvo && fimEdicao < iniAlvo + alvo.comprimento;
+            if (!contem) continue;
+            No novo = new Interpretador(texto, iniAlvo, iniAlvo + alvo.comprimento + delta, parentesesAcima).fatorCompleto();
+            if (novo == null) continue;
+            substituir(i, novo, delta);
+            return resultado();
+        }
+        reinterpretarTudo();
+        return resultado();
+    }
+
+    // 3) troca caminho[i] por novo e ajusta/reavalia os ancestrais
+    private void substituir(int i, No novo, int delta) {
+        No filho = novo;
+        No antigo = caminho[i];
+        for (int j = i - 1; j >= 0; j--) {
+            No pai = caminho[j];
+            if (pai.tipo == 'b') {
+                if (pai.esq == antigo) {
+                    pai.esq = filho;
+                    pai.desloc += delta;
+                } else {
+                    pai.dir = filho;
+                }
+            } else {
+                pai.esq = filho;
+            }
+            pai.comprimento += delta;
+            avaliar(pai);
+            antigo = pai;
+            filho = pai;
+        }
+    }
+
+    private void reinterpretarTudo() {
+        Interpretador p = new Interpretador(texto, 0, texto.length(), 0);
+        try {
+            p.pularEspacos();
+            inicioRaiz = p.pos;
+            raiz = p.expressao();
+            p.pularEspacos();
+            if (p.pos != p.fim) throw new IllegalArgumentException("Token inesperado: '" + texto.charAt(p.pos) + "'");
+            erroSintaxe = null;
+        } catch (RuntimeException e) {
+            raiz = null;
+            erroSintaxe = e.getMessage();
+        }
+    }
+
+    private void avaliar(No no) {
+        if (no.tipo == 'p') {
+            no.valor = no.esq.valor;
+            no.erro = no.esq.erro;
+            return;
+        }
+        if (no.tipo != 'b') return;
+        if (no.esq.erro != null || no.dir.erro != null) {
+            no.erro = no.esq.erro != null ? no.esq.erro : no.dir.erro;
+            return;
+        }
+        no.erro = null;
+        double a = no.esq.valor, b = no.dir.valor;
+        if (aritmetica == Aritmetica.INTEIRA) {
+            int ia = (int) a, ib = (int) b;
+            switch (no.op) {
+                case '+': no.valor = ia + ib; break;
+                case '-': no.valor = ia - ib; break;
+                case '*': no.valor = ia * ib; break;
+                default:
+                    if (ib == 0) no.erro = "Erro: Divisão por zero não permitida.";
+                    else no.valor = ia / ib;
+            }
+        } else {
+            switch (no.op) {
+                case '+': no.valor = a + b; break;
+                case '-': no.valor = a - b; break;
+                case '*': no.valor = a * b; break;
+                default:
+                    if (b == 0.0) no.erro = "Divisao por zero";
+                    else no.valor = a / b;
+            }
+        }
+    }
+
+    /** Analisador descendente recursivo sobre um trecho [pos, fim) do texto. */
+    private final class Interpretador {
+        final CharSequence s;
+        int pos;
+        final int fim;
+        int profundidade; // parênteses abertos acima da posição atual
+
+        Interpretador(CharSequence s, int pos, int fim, int profundidade) {
+            this.s = s;
+            this.pos = pos;
+            this.fim = fim;
+            this.profundidade = profundidade;
+        }
+
+        void pularEspacos() {
+            while (pos < fim && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        /** Todo o trecho como um único número ou grupo entre parênteses; null se não for. */
+        No fatorCompleto() {
+            try {
+                No no = fator();
+                return pos == fim ? no : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        // expressao := termo (('+'|'-') termo)*    — pos no primeiro char não branco
+        No expressao() {
+            int ini = pos;
+            No no = termo();
+            while (true) {
+                int antes = pos;
+                pularEspacos();
+                if (pos < fim && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) {
+                    char op = s.charAt(pos++);
+                    pularEspacos();
+                    int iniDir = pos;
+                    no = binario(no, op, termo(), iniDir - ini);
+                } else {
+                    pos = antes;
+                    return no;
+                }
+            }
+        }
+
+        // termo := fator (('*'|'/') fator)*
+        No termo() {
+            int ini = pos;
+            No no = fator();
+            while (true) {
+                int antes = pos;
+                pularEspacos();
+                if (pos < fim && (s.charAt(pos) == '*' || s.charAt(pos) == '/')) {
+                    char op = s.charAt(pos++);
+                    pularEspacos();
+                    int iniDir = pos;
+                    no = binario(no, op, fator(), iniDir - ini);
+                } else {
+                    pos = antes;
+                    return no;
+                }
+            }
+        }
+
+        // fator := numero | '(' expressao ')'
+        No fator() {
+            if (pos >= fim) throw new IllegalArgumentException("Expressao incompleta");
+            int ini = pos;
+            if (s.charAt(pos) == '(') {
+                if (++profundidade > PROFUNDIDADE_MAXIMA) {
+                    throw new IllegalArgumentException("profundidade maxima de " + PROFUNDIDADE_MAXIMA + " excedida");
+                }
+                pos++;
+                pularEspacos();
+                int iniConteudo = pos;
+                No conteudo = expressao();
+                pularEspacos();
+                if (pos >= fim || s.charAt(pos) != ')') throw new IllegalArgumentException("Mismatched parentheses");
+                pos++;
+                profundidade--;
+                No no = new No();
+                no.tipo = 'p';
+                no.esq = conteudo;
+                no.desloc = iniConteudo - ini;
+                no.comprimento = pos - ini;
+                avaliar(no);
+                return no;
+            }
+            return numero();
+        }
+
+        No numero() {
+            int ini = pos;
+            if (aritmetica == Aritmetica.REAL && s.charAt(pos) == '-') pos++;
+            while (pos < fim && (Character.isDigit(s.charAt(pos)) || (aritmetica == Aritmetica.REAL && s.charAt(pos) == '.'))) pos++;
+            if (pos == ini || (pos == ini + 1 && s.charAt(ini) == '-')) {
+                throw new IllegalArgumentException("Token invalido: '" + s.charAt(pos < fim ? pos : ini) + "'");
+            }
+            String literal = s.subSequence(ini, pos).toString();
+            No no = new No();
+            no.tipo = 'n';
+            no.comprimento = pos - ini;
+            no.valor = aritmetica == Aritmetica.REAL ? Double.parseDouble(literal) : Integer.parseInt(literal);
+            return no;
+        }
+
+        No binario(No esq, char op, No dir, int desloc) {
+            No no = new No();
+            no.tipo = 'b';
+            no.op = op;
+            no.esq = esq;
+            no.dir = dir;
+            no.desloc = desloc;
+            no.comprimento = desloc + dir.comprimento;
+            avaliar(no);
+            return no;
+        }
+    }
+}
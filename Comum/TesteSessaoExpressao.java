@@ -0,0 +1,253 @@
+package Comum;
+import java.util.*;
+
+/**
+ * Verificações da SessaoExpressao, sem dependências externas:
+ *
+ *    java Comum.TesteSessaoExpressao
+ *
+ * Sai com código 1 se alguma falhar. Cobre o limite de aninhamento de
+ * parênteses (calc.expressao.profundidade.maxima): acima dele a expressão deve
+ * ser recusada como erro de sintaxe comum, tanto na abertura da sessão quanto
+ * numa edição que aprofunde um grupo já existente, sem StackOverflowError.
+ *
+ * Cobre também a reinterpretação parcial: depois de cada edição, o resultado
+ * (valor, ou tipo e mensagem da exceção) deve ser o mesmo de uma sessão nova
+ * aberta com o texto editado, para edições dentro de números, nas fronteiras
+ * dos operadores e atravessando parênteses, nas duas aritméticas.
+ */
+public class TesteSessaoExpressao {
+
+    private static final int LIMITE = Integer.getInteger("calc.expressao.profundidade.maxima", 1000);
+
+    private static int falhas;
+
+    public static void main(String[] args) {
+        aninhadaNoLimite();
+        aninhadaAcimaDoLimite();
+        muitoAcimaDoLimite();
+        edicaoAcimaDoLimite();
+        edicaoVoltaAoLimite();
+        for (SessaoExpressao.Aritmetica aritmetica : SessaoExpressao.Aritmetica.values()) {
+            edicoesPontuais(aritmetica);
+            todasAsEdicoesSimples(aritmetica);
+            sequenciaDeEdicoes(aritmetica);
+        }
+        if (falhas > 0) {
+            System.out.println(falhas + " verificacao(oes) falharam");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    static void aninhadaNoLimite() {
+        SessaoExpressao s = new SessaoExpressao(aninhada(LIMITE, "1 + 2"), SessaoExpressao.Aritmetica.REAL);
+        conferirValor("aninhada no limite", s, 3.0);
+    }
+
+    static void aninhadaAcimaDoLimite() {
+        SessaoExpressao s = new SessaoExpressao(aninhada(LIMITE + 1, "1"), SessaoExpressao.Aritmetica.INTEIRA);
+        conferirRecusa("aninhada acima do limite", s);
+    }
+
+    // o caso relatado: ~3000 parênteses derrubavam a thread com StackOverflowError
+    static void muitoAcimaDoLimite() {
+        SessaoExpressao s = new SessaoExpressao(aninhada(100_000, "1"), SessaoExpressao.Aritmetica.REAL);
+        conferirRecusa("100000 parenteses", s);
+    }
+
+    // edição dentro do grupo mais interno: a reinterpretação parcial conta os parênteses acima dela
+    static void edicaoAcimaDoLimite() {
+        String texto = aninhada(LIMITE, "7");
+        SessaoExpressao s = new SessaoExpressao(texto, SessaoExpressao.Aritmetica.REAL);
+        conferirValor("antes da edicao", s, 7.0);
+        int meio = texto.indexOf('7');
+        try {
+            s.editar(meio, 1, "(7)");
+            falhar("edicao acima do limite: aceitou " + s.getTexto().length() + " chars");
+        } catch (IllegalArgumentException e) {
+            conferirMensagem("edicao acima do limite", e);
+        } catch (StackOverflowError e) {
+            falhar("edicao acima do limite: StackOverflowError");
+        }
+    }
+
+    static void edicaoVoltaAoLimite() {
+        String texto = aninhada(LIMITE + 1, "5");
+        SessaoExpressao s = new SessaoExpressao(texto, SessaoExpressao.Aritmetica.REAL);
+        conferirRecusa("antes de remover o grupo", s);
+        int meio = texto.indexOf('5');
+        try {
+            double v = s.editar(meio - 1, 3, "5");
+            if (v != 5.0) falhar("depois de remover o grupo: " + v + " (esperado 5.0)");
+        } catch (RuntimeException e) {
+            falhar("depois de remover o grupo: " + e);
+        }
+    }
+
+    // casos escolhidos: (texto, offset, comprimento, substituição)
+    static void edicoesPontuais(SessaoExpressao.Aritmetica aritmetica) {
+        // dentro de números
+        conferirEdicao(aritmetica, "12 + 345", 1, 1, "7");
+        conferirEdicao(aritmetica, "12 + 345", 6, 0, "00");
+        conferirEdicao(aritmetica, "12 + 345", 5, 3, "9");
+        conferirEdicao(aritmetica, "(12 * 3) - 4", 1, 2, "");
+        // nas fronteiras dos operadores
+        conferirEdicao(aritmetica, "1+2*3", 1, 1, "*");
+        conferirEdicao(aritmetica, "1+2*3", 3, 1, "-");
+        conferirEdicao(aritmetica, "1+2*3", 2, 0, "0");
+        conferirEdicao(aritmetica, "1+2*3", 1, 0, "5");
+        conferirEdicao(aritmetica, "1+2*3", 1, 3, "");
+        conferirEdicao(aritmetica, "8/2/2", 1, 1, "");
+        conferirEdicao(aritmetica, "8 - 2 - 1", 4, 1, "*");
+        // atravessando parênteses
+        conferirEdicao(aritmetica, "(1+2)*3", 0, 1, "");
+        conferirEdicao(aritmetica, "(1+2)*3", 4, 1, "");
+        conferirEdicao(aritmetica, "(1+2)*3", 3, 3, "");
+        conferirEdicao(aritmetica, "(1+2)*(3+4)", 4, 3, ")*(");
+        conferirEdicao(aritmetica, "(1+2)*(3+4)", 4, 3, "+");
+        conferirEdicao(aritmetica, "((1+2)*3)-4", 2, 5, "5");
+        conferirEdicao(aritmetica, "2*(3+4)", 2, 0, "(");
+        conferirEdicao(aritmetica, "2*(3+4)", 7, 0, ")");
+        conferirEdicao(aritmetica, "(2*(3+4))", 3, 5, "1");
+        // erros que aparecem e somem
+        conferirEdicao(aritmetica, "6/(3-1)", 5, 1, "3");
+        conferirEdicao(aritmetica, "6/(3-3)", 5, 1, "1");
+        conferirEdicao(aritmetica, "1+", 2, 0, "1");
+        conferirEdicao(aritmetica, "1+2", 2, 1, "");
+    }
+
+    // cada posição e comprimento 0..2 de algumas expressões, com substituições curtas
+    static void todasAsEdicoesSimples(SessaoExpressao.Aritmetica aritmetica) {
+        String[] textos = {"12+3*(45-6)/7", "(1+2)*(3-(4/2))", "10 - 2 * 3 + 4"};
+        String[] substituicoes = {"", "0", "9", "12", "+", "-", "*", "/", "(", ")", " ", "(1", "2)", ")+("};
+        for (String base : textos) {
+            for (int offset = 0; offset <= base.length(); offset++) {
+                for (int comprimento = 0; comprimento <= 2 && offset + comprimento <= base.length(); comprimento++) {
+                    for (String substituicao : substituicoes) {
+                        conferirEdicao(aritmetica, base, offset, comprimento, substituicao);
+                    }
+                }
+            }
+        }
+    }
+
+    // edições encadeadas na mesma sessão, para pegar estado velho (comprimentos,
+    // deslocamentos, valores) deixado por uma edição anterior. As edições mantêm a
+    // expressão válida, senão a sessão cairia logo na reinterpretação completa;
+    // as inválidas vêm em par com a edição que as desfaz.
+    static void sequenciaDeEdicoes(SessaoExpressao.Aritmetica aritmetica) {
+        Random r = new Random(2024);
+        for (int rodada = 0; rodada < 50; rodada++) {
+            SessaoExpressao s = new SessaoExpressao("(1+2)*3-4/(5+6)", aritmetica);
+            for (int passo = 0; passo < 40 && s.getTexto().length() < 200; passo++) {
+                String texto = s.getTexto();
+                String caso = aritmetica + " rodada " + rodada + " passo " + passo + " em '" + texto + "'";
+                int[] numero = trecho(texto, r, true);
+                int[] operador = trecho(texto, r, false);
+                boolean ok;
+                switch (r.nextInt(5)) {
+                    case 0: // troca o número inteiro
+                        ok = conferirEdicao(caso, s, aritmetica, numero[0], numero[1], String.valueOf(r.nextInt(1000)));
+                        break;
+                    case 1: // dígito inserido ou removido dentro do número
+                        ok = numero[1] > 1 && r.nextBoolean()
+                                ? conferirEdicao(caso, s, aritmetica, numero[0] + r.nextInt(numero[1]), 1, "")
+                                : conferirEdicao(caso, s, aritmetica, numero[0] + r.nextInt(numero[1] + 1), 0, String.valueOf(r.nextInt(10)));
+                        break;
+                    case 2: // troca o operador
+                        ok = operador == null
+                                || conferirEdicao(caso, s, aritmetica, operador[0], 1, String.valueOf("+-*/".charAt(r.nextInt(4))));
+                        break;
+                    case 3: // o número vira um grupo entre parênteses
+                        ok = conferirEdicao(caso, s, aritmetica, numero[0], numero[1],
+                                "(" + r.nextInt(20) + "+*-/".charAt(r.nextInt(4)) + (1 + r.nextInt(20)) + ")");
+                        break;
+                    default: // quebra a sintaxe num ponto qualquer e desfaz
+                        int offset = r.nextInt(texto.length() + 1);
+                        String lixo = r.nextBoolean() ? ")" : "*";
+                        ok = conferirEdicao(caso, s, aritmetica, offset, 0, lixo)
+                                && conferirEdicao(caso + " (desfazendo)", s, aritmetica, offset, lixo.length(), "");
+                }
+                if (!ok) break;
+            }
+        }
+    }
+
+    // {início, comprimento} de um número (ou operador binário) sorteado; null se não houver
+    static int[] trecho(String texto, Random r, boolean numero) {
+        List<int[]> achados = new ArrayList<>();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (numero && Character.isDigit(c)) {
+                int fim = i;
+                while (fim < texto.length() && Character.isDigit(texto.charAt(fim))) fim++;
+                achados.add(new int[] {i, fim - i});
+                i = fim - 1;
+            } else if (!numero && "+-*/".indexOf(c) >= 0) {
+                achados.add(new int[] {i, 1});
+            }
+        }
+        return achados.isEmpty() ? null : achados.get(r.nextInt(achados.size()));
+    }
+
+    static void conferirEdicao(SessaoExpressao.Aritmetica aritmetica, String texto, int offset, int comprimento, String substituicao) {
+        conferirEdicao(aritmetica + " '" + texto + "'", new SessaoExpressao(texto, aritmetica), aritmetica, offset, comprimento, substituicao);
+    }
+
+    // compara a edição incremental com uma sessão nova sobre o texto editado
+    static boolean conferirEdicao(String caso, SessaoExpressao s, SessaoExpressao.Aritmetica aritmetica, int offset, int comprimento, String substituicao) {
+        String incremental;
+        try {
+            incremental = "valor " + s.editar(offset, comprimento, substituicao);
+        } catch (RuntimeException e) {
+            incremental = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        String depois = s.getTexto();
+        String doZero;
+        try {
+            doZero = "valor " + new SessaoExpressao(depois, aritmetica).resultado();
+        } catch (RuntimeException e) {
+            doZero = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        if (incremental.equals(doZero)) return true;
+        falhar(caso + " editar(" + offset + ", " + comprimento + ", '" + substituicao + "') -> '" + depois
+                + "': " + incremental + " (do zero: " + doZero + ")");
+        return false;
+    }
+
+    static String aninhada(int niveis, String miolo) {
+        StringBuilder sb = new StringBuilder(niveis * 2 + miolo.length());
+        for (int i = 0; i < niveis; i++) sb.append('(');
+        sb.append(miolo);
+        for (int i = 0; i < niveis; i++) sb.append(')');
+        return sb.toString();
+    }
+
+    static void conferirValor(String caso, SessaoExpressao s, double esperado) {
+        try {
+            double v = s.resultado();
+            if (v != esperado) falhar(caso + ": " + v + " (esperado " + esperado + ")");
+        } catch (RuntimeException e) {
+            falhar(caso + ": " + e);
+        }
+    }
+
+    static void conferirRecusa(String caso, SessaoExpressao s) {
+        try {
+            falhar(caso + ": aceitou, valor " + s.resultado());
+        } catch (IllegalArgumentException e) {
+            conferirMensagem(caso, e);
+        }
+    }
+
+    static void conferirMensagem(String caso, IllegalArgumentException e) {
+        String esperada = "profundidade maxima de " + LIMITE + " excedida";
+        if (!esperada.equals(e.getMessage())) falhar(caso + ": mensagem '" + e.getMessage() + "' (esperada '" + esperada + "')");
+    }
+
+    static void falhar(String descricao) {
+        falhas++;
+        System.out.println("FALHOU " + descricao);
+    }
+}
@@ -0,0 +1,88 @@
+package RMI;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.*;
+
+/**
+ * Compara, com tráfego dominado por entradas inválidas, os métodos que sinalizam
+ * erro com RemoteException (divisao, calcularExpressao) e as versões que devolvem
+ * Resultado (divisaoResultado, calcularExpressaoResultado).
+ *
+ *    java RMI.BenchmarkErros [iteracoes] [percentual de erros]
+ *
+ * Sobe registro e objeto remoto no próprio processo (porta 1199, sem interferir
+ * num servidor em 1099) e chama pelo stub, passando por serialização e loopback
+ * como um cliente real. Imprime média, p50, p99 e chamadas por segundo.
+ */
+public class BenchmarkErros {
+
+    interface Chamada {
+        void chamar(String expressao, int divisor) throws RemoteException;
+    }
+
+    private static final String[] VALIDAS = { "(10 + 15) * 4 - 8 / 2", "7 * (3 + 2)" };
+    private static final String[] INVALIDAS = { "(10 + 15) * 4 / 0", "10 + x", "(1 + 2))", "1 + + 2" };
+
+    public static void main(String[] args) throws Exception {
+        int iteracoes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int percentualErros = args.length > 1 ? Integer.parseInt(args[1]) : 90;
+
+        Calculadora calculadora = new Calculadora();
+        ICalculadora stub = (ICalculadora) UnicastRemoteObject.exportObject(calculadora, 0);
+        Registry reg = LocateRegistry.createRegistry(1199);
+        reg.rebind("calculadora", stub);
+        ICalculadora calc = (ICalculadora) reg.lookup("calculadora");
+
+        Chamada excecoes = (expressao, divisor) -> {
+            try {
+                calc.divisao(100, divisor);
+            } catch (RemoteException e) {
+                // esperado quando divisor == 0
+            }
+            try {
+                calc.calcularExpressao(expressao);
+            } catch (RemoteException e) {
+                // esperado para expressões inválidas
+            }
+        };
+        Chamada resultados = (expressao, divisor) -> {
+            calc.divisaoResultado(100, divisor);
+            calc.calcularExpressaoResultado(expressao);
+        };
+
+        System.out.printf(Locale.ROOT, "%d%% de entradas invalidas, 2 chamadas remotas por iteracao%n", percentualErros);
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %10s %12s%n", "metodos", "media(us)", "p50(us)", "p99(us)", "iteracoes/s");
+        for (int rodada = 0; rodada < 2; rodada++) { // a 1a rodada também serve de aquecimento
+            medir("excecoes", excecoes, iteracoes, percentualErros);
+            medir("resultado", resultados, iteracoes, percentualErros);
+        }
+
+        reg.unbind("calculadora");
+        UnicastRemoteObject.unexportObject(calculadora, true);
+        UnicastRemoteObject.unexportObject(reg, true);
+    }
+
+    static void medir(String nome, Chamada chamada, int iteracoes, int percentualErros) throws RemoteException {
+        Random aleatorio = new Random(42); // mesma sequência de entradas para os dois métodos
+        long[] amostras = new long[iteracoes];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteracoes; i++) {
+            boolean erro = aleatorio.nextInt(100) < percentualErros;
+            String expressao = erro ? INVALIDAS[aleatorio.nextInt(INVALIDAS.length)] : VALIDAS[aleatorio.nextInt(VALIDAS.length)];
+            int divisor = erro ? 0 : 7;
+            long t0 = System.nanoTime();
+            chamada.chamar(expressao, divisor);
+            amostras[i] = System.nanoTime() - t0;
+        }
+        long total = System.nanoTime() - inicio;
+        Arrays.sort(amostras);
+        System.out.printf(Locale.ROOT, "%-10s %10.1f %10.1f %10.1f %12.0f%n", nome,
+                total / 1000.0 / iteracoes,
+                amostras[iteracoes / 2] / 1000.0,
+                amostras[(int) (iteracoes * 0.99)] / 1000.0,
+                iteracoes / (total / 1e9));
+    }
+}
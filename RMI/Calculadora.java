@@ -5,64 +5,266 @@ import java.rmi.AlreadyBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Comum.CacheResultados;
+import Comum.CorpusExpressoes;
+import Comum.EventosFase;
+import Comum.LogAcesso;
+import Comum.RegistroSessoes;
+import Comum.SessaoExpressao;
 
 /**
  * Implementação do objeto remoto da Calculadora via RMI.
+ * Cada chamada remota gera um registro no log de acesso assíncrono, com o host do
+ * cliente como origem, salvo com -Dcalc.log.desativado=true (ver Comum.LogAcesso).
+ * calcularExpressao consulta o cache persistente de resultados, se configurado
+ * (-Dcalc.cache.arquivo=..., ver Comum.CacheResultados).
+ * divisaoResultado / calcularExpressaoResultado devolvem erros do usuário como
+ * Resultado (código, sem exceção nem stack trace); o avaliador interno nunca lança.
+ * As sessões incrementais usam a mesma aritmética int (ver Comum.SessaoExpressao).
  */
 public class Calculadora implements ICalculadora {
 
     private static final long serialVersionUID = 1L;
-    private static int chamadas = 0;   // contador de chamadas remotas
+    private static final AtomicLong chamadas = new AtomicLong();   // contador de chamadas remotas
+    private static final LogAcesso log = LogAcesso.padrao();
+
+    /** Domínio do cache de resultados: aritmética int do servidor RMI. */
+    public static final long DOMINIO_CACHE = 2;
+    private static final CacheResultados cache = CacheResultados.doSistema(DOMINIO_CACHE);
+    private static final CorpusExpressoes captura = CorpusExpressoes.capturaDoSistema();
+    private final RegistroSessoes sessoes = new RegistroSessoes(SessaoExpressao.Aritmetica.INTEIRA);
 
     // ================= OPERACOES BASICAS ==================
 
     @Override
     public int soma(int a, int b) throws RemoteException {
-        System.out.println("Método soma chamado " + chamadas++);
-        return a + b;
+        long inicio = System.nanoTime();
+        int r = a + b;
+        registrar(1, inicio, 8, LogAcesso.OK);
+        return r;
     }
 
     @Override
     public int subtracao(int a, int b) throws RemoteException {
-        System.out.println("Método subtracao chamado " + chamadas++);
-        return a - b;
+        long inicio = System.nanoTime();
+        int r = a - b;
+        registrar(2, inicio, 8, LogAcesso.OK);
+        return r;
     }
 
     @Override
     public int multiplicacao(int a, int b) throws RemoteException {
-        System.out.println("Método multiplicacao chamado " + chamadas++);
-        return a * b;
+        long inicio = System.nanoTime();
+        int r = a * b;
+        registrar(3, inicio, 8, LogAcesso.OK);
+        return r;
     }
 
     @Override
     public int divisao(int a, int b) throws RemoteException {
-        System.out.println("Método divisao chamado " + chamadas++);
+        long inicio = System.nanoTime();
+        try {
+            int r = dividir(a, b);
+            registrar(4, inicio, 8, LogAcesso.OK);
+            return r;
+        } catch (RemoteException e) {
+            registrar(4, inicio, 8, LogAcesso.ERRO);
+            throw e;
+        }
+    }
+
+    private static int dividir(int a, int b) throws RemoteException {
         if (b == 0)
             throw new RemoteException("Erro: Divisão por zero não permitida.");
         return a / b;
     }
 
+    // Registro no log de acesso; tamanho = bytes dos argumentos, origem = host do cliente RMI.
+    // op: 1-5 como no protocolo socket; sessões: 6 abrir, 7 editar, 8 fechar, 9 ler o resultado
+    private static void registrar(int op, long inicio, int tamanho, int resultado) {
+        long seq = chamadas.getAndIncrement();
+        if (log == null) return;
+        long origem;
+        try {
+            origem = LogAcesso.origem(RemoteServer.getClientHost());
+        } catch (ServerNotActiveException e) {
+            origem = 0; // chamada local, fora de uma chamada remota
+        }
+        log.registrar(seq, op, System.nanoTime() - inicio, tamanho, resultado, origem);
+    }
+
     // ================== EXPRESSÕES COMPLETAS ====================
 
     @Override
     public int calcularExpressao(String expressao) throws RemoteException {
-        System.out.println("Método calcularExpressao chamado " +
-                chamadas++ + " para: " + expressao);
+        long inicio = System.nanoTime();
+        int tamanho = expressao == null ? 0 : expressao.length();
+        if (captura != null) captura.registrar(expressao);
+
+        Avaliacao av = avaliar(expressao);
+        if (av.codigo == Resultado.OK) {
+            registrar(5, inicio, tamanho, LogAcesso.OK);
+            return av.valor;
+        }
+        registrar(5, inicio, tamanho, LogAcesso.ERRO);
+        throw new RemoteException("Expressão inválida: " + av.mensagem());
+    }
 
+    // ============ VERSÕES COM RESULTADO (sem exceção) ============
+
+    @Override
+    public Resultado divisaoResultado(int a, int b) throws RemoteException {
+        long inicio = System.nanoTime();
+        if (b == 0) {
+            registrar(4, inicio, 8, LogAcesso.ERRO);
+            return Resultado.erro(Resultado.DIVISAO_POR_ZERO);
+        }
+        registrar(4, inicio, 8, LogAcesso.OK);
+        return Resultado.ok(a / b);
+    }
+
+    @Override
+    public Resultado calcularExpressaoResultado(String expressao) throws RemoteException {
+        long inicio = System.nanoTime();
+        int tamanho = expressao == null ? 0 : expressao.length();
+        if (captura != null) captura.registrar(expressao);
+
+        Avaliacao av = avaliar(expressao);
+        registrar(5, inicio, tamanho, av.codigo == Resultado.OK ? LogAcesso.OK : LogAcesso.ERRO);
+        return av.codigo == Resultado.OK ? Resultado.ok(av.valor) : Resultado.erro(av.codigo, av.detalhe);
+    }
+
+    // ================== SESSÕES INCREMENTAIS ====================
+
+    @Override
+    public long abrirSessao(String expressao) throws RemoteException {
+        long inicio = System.nanoTime();
+        if (expressao == null) throw new RemoteException("Expressão inválida: expressão nula");
+        if (captura != null) captura.registrar(expressao);
         try {
-            List<String> tokens = tokenize(expressao);
-            List<String> rpn = shuntingYard(tokens);
-            int result = evalRPN(rpn);
-            return result;
-        } catch (Exception e) {
+            long id = sessoes.abrir(expressao);
+            registrar(6, inicio, expressao.length(), LogAcesso.OK);
+            return id;
+        } catch (IllegalStateException e) {
+            registrar(6, inicio, expressao.length(), LogAcesso.ERRO);
+            throw new RemoteException("Erro: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int resultadoSessao(long id) throws RemoteException {
+        long inicio = System.nanoTime();
+        SessaoExpressao sessao = sessao(id);
+        try {
+            int r = (int) sessao.resultado();
+            registrar(9, inicio, 8, LogAcesso.OK);
+            return r;
+        } catch (RuntimeException e) {
+            registrar(9, inicio, 8, LogAcesso.ERRO);
             throw new RemoteException("Expressão inválida: " + e.getMessage());
         }
     }
 
+    @Override
+    public int editarSessao(long id, int offset, int comprimento, String substituicao) throws RemoteException {
+        long inicio = System.nanoTime();
+        int tamanho = 16 + (substituicao == null ? 0 : substituicao.length());
+        SessaoExpressao sessao = sessao(id);
+        try {
+            int r = (int) sessao.editar(offset, comprimento, substituicao == null ? "" : substituicao);
+            registrar(7, inicio, tamanho, LogAcesso.OK);
+            return r;
+        } catch (IndexOutOfBoundsException e) {
+            registrar(7, inicio, tamanho, LogAcesso.ERRO);
+            throw new RemoteException("Edição inválida: " + e.getMessage());
+        } catch (RuntimeException e) {
+            registrar(7, inicio, tamanho, LogAcesso.ERRO);
+            throw new RemoteException("Expressão inválida: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void fecharSessao(long id) throws RemoteException {
+        long inicio = System.nanoTime();
+        boolean existia = sessoes.fechar(id);
+        registrar(8, inicio, 8, existia ? LogAcesso.OK : LogAcesso.ERRO);
+        if (!existia) throw new RemoteException("Sessão inexistente: " + id);
+    }
+
+    private SessaoExpressao sessao(long id) throws RemoteException {
+        SessaoExpressao sessao = sessoes.obter(id);
+        if (sessao == null) throw new RemoteException("Sessão inexistente: " + id);
+        return sessao;
+    }
+
+    // Estado de uma avaliação: o valor ou o código de erro (Resultado.*) com o detalhe da mensagem
+    private static final class Avaliacao {
+        int valor;
+        byte codigo = Resultado.OK;
+        String detalhe;
+
+        void falhar(byte codigo, String detalhe) {
+            this.codigo = codigo;
+            this.detalhe = detalhe;
+        }
+
+        // Texto das RemoteException de calcularExpressao (igual ao das exceções de antes)
+        String mensagem() {
+            String m = Resultado.erro(codigo, detalhe).mensagem();
+            return codigo == Resultado.DIVISAO_POR_ZERO ? "Erro: " + m : m;
+        }
+    }
+
+    // Avalia consultando/alimentando o cache persistente; erros voltam como código, sem exceções
+    private Avaliacao avaliar(String expressao) {
+        return avaliar(expressao, true);
+    }
+
+    // usarCache = false: sempre passa pelo avaliador (aquecimento do JIT)
+    private Avaliacao avaliar(String expressao, boolean usarCache) {
+        Avaliacao av = new Avaliacao();
+        if (expressao == null) {
+            av.falhar(Resultado.EXPRESSAO_NULA, null);
+            return av;
+        }
+        if (usarCache && cache != null) {
+            double guardado = cache.buscar(expressao, Double.NaN);
+            if (!Double.isNaN(guardado)) {
+                av.valor = (int) guardado;
+                return av;
+            }
+        }
+        int tamanho = expressao.length();
+
+        EventosFase.Tokenizacao evTok = new EventosFase.Tokenizacao();
+        evTok.begin();
+        List<String> tokens = tokenize(expressao, av);
+        if (evTok.shouldCommit()) { evTok.preencher(5, tamanho, tokens == null ? 0 : tokens.size()); evTok.commit(); }
+        if (tokens == null) return av;
+
+        EventosFase.ShuntingYard evSy = new EventosFase.ShuntingYard();
+        evSy.begin();
+        List<String> rpn = shuntingYard(tokens, av);
+        if (evSy.shouldCommit()) { evSy.preencher(5, tamanho, tokens.size()); evSy.commit(); }
+        if (rpn == null) return av;
+
+        EventosFase.AvaliacaoRPN evRpn = new EventosFase.AvaliacaoRPN();
+        evRpn.begin();
+        boolean ok = evalRPN(rpn, av);
+        if (evRpn.shouldCommit()) { evRpn.preencher(5, tamanho, tokens.size()); evRpn.commit(); }
+
+        if (ok && usarCache && cache != null) cache.guardar(expressao, av.valor);
+        return av;
+    }
+
     // ====================== TOKENIZAÇÃO =======================
-    private List<String> tokenize(String s) {
+    private List<String> tokenize(String s, Avaliacao av) {
         List<String> tokens = new ArrayList<>();
         s = s.replace(" ", "");
 
@@ -75,15 +277,14 @@ public class Calculadora implements ICalculadora {
                 i++;
             }
             else if (Character.isDigit(c)) {
-                StringBuilder num = new StringBuilder();
-                while (i < s.length() && Character.isDigit(s.charAt(i))) {
-                    num.append(s.charAt(i));
+                int inicio = i;
+                while (i < s.length() && Character.isDigit(s.charAt(i)))
                     i++;
-                }
-                tokens.add(num.toString());
+                tokens.add(s.substring(inicio, i));
             }
             else {
-                throw new RuntimeException("Caractere inválido: " + c);
+                av.falhar(Resultado.CARACTERE_INVALIDO, String.valueOf(c));
+                return null;
             }
         }
         return tokens;
@@ -93,17 +294,27 @@ public class Calculadora implements ICalculadora {
         return t.equals("+") || t.equals("-") || t.equals("*") || t.equals("/");
     }
 
+    // Equivale a t.matches("\\d+") (dígitos ASCII), sem regex
+    static boolean isInteiro(String t) {
+        if (t.isEmpty()) return false;
+        for (int i = 0; i < t.length(); i++) {
+            char c = t.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
     private int precedence(String op) {
         return (op.equals("+")||op.equals("-")) ? 1 : 2;
     }
 
     // ============= SHUNTING-YARD -> RPN ===================
-    private List<String> shuntingYard(List<String> tokens) {
+    private List<String> shuntingYard(List<String> tokens, Avaliacao av) {
         List<String> output = new ArrayList<>();
-        Stack<String> stack = new Stack<>();
+        Deque<String> stack = new ArrayDeque<>();
 
         for (String t : tokens) {
-            if (t.matches("\\d+")) {
+            if (isInteiro(t)) {
                 output.add(t);
             }
             else if (isOperator(t)) {
@@ -119,8 +330,10 @@ public class Calculadora implements ICalculadora {
             else if (t.equals(")")) {
                 while (!stack.isEmpty() && !stack.peek().equals("("))
                     output.add(stack.pop());
-                if (stack.isEmpty())
-                    throw new RuntimeException("Parênteses desbalanceados");
+                if (stack.isEmpty()) {
+                    av.falhar(Resultado.PARENTESES_DESBALANCEADOS, null);
+                    return null;
+                }
                 stack.pop();
             }
         }
@@ -132,31 +345,57 @@ public class Calculadora implements ICalculadora {
     }
 
     // ================= AVALIAÇÃO RPN =====================
-    private int evalRPN(List<String> rpn) throws RemoteException {
-        Stack<Integer> stack = new Stack<>();
+    // Devolve false (com o código em av) em vez de lançar exceção
+    private boolean evalRPN(List<String> rpn, Avaliacao av) {
+        int[] stack = new int[rpn.size()];
+        int topo = 0;
 
         for (String t : rpn) {
-            if (t.matches("\\d+")) {
-                stack.push(Integer.parseInt(t));
+            if (isInteiro(t)) {
+                long v = 0;
+                for (int i = 0; i < t.length(); i++) {
+                    v = v * 10 + (t.charAt(i) - '0');
+                    if (v > Integer.MAX_VALUE) {
+                        av.falhar(Resultado.NUMERO_INVALIDO, t);
+                        return false;
+                    }
+                }
+                stack[topo++] = (int) v;
             }
             else {
-                int b = stack.pop();
-                int a = stack.pop();
+                if (topo < 2) {
+                    av.falhar(Resultado.OPERANDO_AUSENTE, null);
+                    return false;
+                }
+                int b = stack[--topo];
+                int a = stack[--topo];
 
+                // operações locais: não contam como chamadas remotas no log
                 switch (t) {
-                    case "+": stack.push(soma(a,b)); break;
-                    case "-": stack.push(subtracao(a,b)); break;
-                    case "*": stack.push(multiplicacao(a,b)); break;
-                    case "/": stack.push(divisao(a,b)); break;
-                    default: throw new RuntimeException("Operador inválido: " + t);
+                    case "+": stack[topo++] = a + b; break;
+                    case "-": stack[topo++] = a - b; break;
+                    case "*": stack[topo++] = a * b; break;
+                    case "/":
+                        if (b == 0) {
+                            av.falhar(Resultado.DIVISAO_POR_ZERO, null);
+                            return false;
+                        }
+                        stack[topo++] = a / b;
+                        break;
+                    default:
+                        av.falhar(Resultado.OPERADOR_INVALIDO, t);
+                        return false;
                 }
             }
         }
 
-        if (stack.size() != 1)
-            throw new RuntimeException("Erro ao avaliar expressão.");
+        if (topo != 1) {
+            av.falhar(Resultado.EXPRESSAO_MALFORMADA, null);
+            return false;
+        }
 
-        return stack.pop();
+        av.valor = stack[0];
+        return true;
     }
 
     // =================== MAIN (REGISTRO RMI) ====================
@@ -165,6 +404,12 @@ public class Calculadora implements ICalculadora {
 
         Calculadora calculadora = new Calculadora();
 
+        // Aquecimento com o corpus gravado antes de publicar o objeto no registro
+        CorpusExpressoes.aquecer("Servidor RMI", calculadora::avaliar, expressao -> {
+            Avaliacao av = calculadora.avaliar(expressao, false);
+            if (av.codigo != Resultado.OK) throw new IllegalArgumentException(av.mensagem());
+        });
+
         // Exporta o objeto remoto na porta 1100
         ICalculadora stub = (ICalculadora)
                 UnicastRemoteObject.exportObject(calculadora, 1100);
@@ -183,5 +428,6 @@ public class Calculadora implements ICalculadora {
         reg.rebind("calculadora", stub);
 
         System.out.println("Servidor Calculadora RMI pronto!");
+        CorpusExpressoes.pronto("Servidor RMI");
     }
 }
\ No newline at end of file
@@ -6,8 +6,35 @@ import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.util.*;
 
+import Comum.EventosFase;
+import Comum.PlanejadorAdaptativo;
+
 public class CalculadoraCliente {
 
+    private static final PlanejadorAdaptativo planejador = new PlanejadorAdaptativo();
+
+    // Aritmética inteira local usada pelo planejador para dobrar subárvores (modo híbrido)
+    private static final PlanejadorAdaptativo.Aritmetica<Integer> ARITMETICA = new PlanejadorAdaptativo.Aritmetica<Integer>() {
+        public Integer literal(String token) { return Integer.parseInt(token); }
+        public Integer aplicar(String op, Integer a, Integer b) {
+            switch (op) {
+                case "+": return a + b;
+                case "-": return a - b;
+                case "*": return a * b;
+                case "/":
+                    if (b == 0) throw new ArithmeticException("Divisão por zero não permitida.");
+                    return a / b;
+            }
+            throw new RuntimeException("Operador inválido: " + op);
+        }
+        // O tokenizador do servidor não aceita sinal: negativos viram (0-x)
+        public String formatar(Integer valor) {
+            if (valor >= 0) return String.valueOf(valor);
+            if (valor == Integer.MIN_VALUE) return "(0-2147483647-1)";
+            return "(0-" + (-valor) + ")";
+        }
+    };
+
     public static void main(String[] args) {
 
         try {
@@ -22,13 +49,20 @@ public class CalculadoraCliente {
                 System.out.println("\nMENU:");
                 System.out.println("1 - Expressão (Abordagem 1 - cliente decompõe)");
                 System.out.println("2 - Expressão (Abordagem 2 - servidor calcula)");
-                System.out.println("3 - Sair");
+                System.out.println("3 - Expressão (automático - planejador escolhe)");
+                System.out.println("4 - Métricas do planejador");
+                System.out.println("5 - Sessão incremental (envia a expressão uma vez e depois só edições)");
+                System.out.println("6 - Sair");
                 System.out.print("Escolha: ");
 
                 String op = sc.nextLine();
 
-                if (op.equals("3"))
+                if (op.equals("6"))
                     break;
+                if (op.equals("4")) {
+                    System.out.println(planejador.metricas());
+                    continue;
+                }
 
                 System.out.print("Digite a expressão: ");
                 String expr = sc.nextLine();
@@ -42,7 +76,14 @@ public class CalculadoraCliente {
                     }
                     else if (op.equals("2")) {
                         System.out.println("Usando Abordagem 2 (servidor calcula)");
-                        resultado = calc.calcularExpressao(expr);
+                        resultado = valor(calc.calcularExpressaoResultado(expr));
+                    }
+                    else if (op.equals("3")) {
+                        resultado = avaliarAdaptativo(expr, calc);
+                    }
+                    else if (op.equals("5")) {
+                        sessaoIncremental(expr, calc, sc);
+                        continue;
                     }
                     else {
                         System.out.println("Opção inválida.");
@@ -63,6 +104,52 @@ public class CalculadoraCliente {
         }
     }
 
+    // =================== Sessão incremental ===================
+
+    /**
+     * Abre uma sessão com a expressão e, a cada linha "offset comprimento [texto]",
+     * envia só a edição; o servidor reinterpreta apenas o trecho alterado.
+     * Linha vazia encerra a sessão.
+     */
+    private static void sessaoIncremental(String expr, ICalculadora calc, Scanner sc)
+            throws RemoteException {
+        long id = calc.abrirSessao(expr);
+        try {
+            System.out.println("Sessão " + id + " - resultado: " + resultadoOuErro(calc, id, -1, 0, null));
+            while (true) {
+                System.out.print("Edição (offset comprimento [texto], vazio encerra): ");
+                String linha = sc.nextLine().trim();
+                if (linha.isEmpty()) break;
+                String[] p = linha.split("\\s+", 3);
+                if (p.length < 2) {
+                    System.out.println("Uso: offset comprimento [texto]");
+                    continue;
+                }
+                try {
+                    int offset = Integer.parseInt(p[0]);
+                    int comprimento = Integer.parseInt(p[1]);
+                    String texto = p.length > 2 ? p[2] : "";
+                    System.out.println("Resultado: " + resultadoOuErro(calc, id, offset, comprimento, texto));
+                } catch (NumberFormatException e) {
+                    System.out.println("Uso: offset comprimento [texto]");
+                }
+            }
+        } finally {
+            calc.fecharSessao(id);
+        }
+    }
+
+    // Resultado atual (offset < 0) ou após a edição; expressão inválida vira mensagem
+    private static String resultadoOuErro(ICalculadora calc, long id, int offset, int comprimento, String texto) {
+        try {
+            return String.valueOf(offset < 0
+                    ? calc.resultadoSessao(id)
+                    : calc.editarSessao(id, offset, comprimento, texto));
+        } catch (RemoteException e) {
+            return "Erro: " + e.getMessage();
+        }
+    }
+
     // =================== Abordagem 1 ==========================
 
     /**
@@ -72,31 +159,100 @@ public class CalculadoraCliente {
     private static int avaliarNoCliente(String expr, ICalculadora calc)
             throws Exception {
 
+        EventosFase.Tokenizacao evTok = new EventosFase.Tokenizacao();
+        evTok.begin();
         List<String> tokens = tokenize(expr);
+        if (evTok.shouldCommit()) { evTok.preencher(5, expr.length(), tokens.size()); evTok.commit(); }
+
+        EventosFase.ShuntingYard evSy = new EventosFase.ShuntingYard();
+        evSy.begin();
         List<String> rpn = shuntingYard(tokens);
+        if (evSy.shouldCommit()) { evSy.preencher(5, expr.length(), tokens.size()); evSy.commit(); }
+
+        return avaliarRpnNoCliente(rpn, expr.length(), calc);
+    }
+
+    private static int avaliarRpnNoCliente(List<String> rpn, int tamanhoExpressao, ICalculadora calc)
+            throws Exception {
 
         Stack<Integer> stack = new Stack<>();
 
         for (String t : rpn) {
-            if (t.matches("\\d+")) {
+            if (Calculadora.isInteiro(t)) {
                 stack.push(Integer.parseInt(t));
             } else {
                 int b = stack.pop();
                 int a = stack.pop();
 
+                long inicio = System.nanoTime();
+                EventosFase.ChamadaRemota evChamada = new EventosFase.ChamadaRemota();
+                evChamada.begin();
+                int opcode;
                 switch (t) {
-                    case "+": stack.push(calc.soma(a,b)); break;
-                    case "-": stack.push(calc.subtracao(a,b)); break;
-                    case "*": stack.push(calc.multiplicacao(a,b)); break;
-                    case "/": stack.push(calc.divisao(a,b)); break;
+                    case "+": stack.push(calc.soma(a,b)); opcode = 1; break;
+                    case "-": stack.push(calc.subtracao(a,b)); opcode = 2; break;
+                    case "*": stack.push(calc.multiplicacao(a,b)); opcode = 3; break;
+                    case "/": stack.push(valor(calc.divisaoResultado(a,b))); opcode = 4; break;
                     default: throw new RuntimeException("Operador inválido: " + t);
                 }
+                if (evChamada.shouldCommit()) { evChamada.preencher(opcode, tamanhoExpressao, rpn.size()); evChamada.commit(); }
+                planejador.registrarChamada(3, System.nanoTime() - inicio);
             }
         }
 
         return stack.pop();
     }
 
+    // =================== Modo automático ==========================
+
+    /**
+     * O planejador estima o custo da Abordagem 1, da Abordagem 2 e da híbrida
+     * (subárvores dobradas localmente + uma chamada com o restante) e escolhe a mais barata.
+     */
+    private static int avaliarAdaptativo(String expr, ICalculadora calc)
+            throws Exception {
+
+        long inicio = System.nanoTime();
+        PlanejadorAdaptativo.Plano plano =
+                planejador.planejar(expr, s -> shuntingYard(tokenize(s)));
+        System.out.println("Planejador escolheu " + plano.getEstrategia());
+
+        int resultado;
+        switch (plano.getEstrategia()) {
+            case ABORDAGEM1:
+                resultado = avaliarRpnNoCliente(plano.getRpn(), expr.length(), calc);
+                break;
+            case HIBRIDA:
+                String reduzida = planejador.reduzir(plano, ARITMETICA);
+                resultado = calcularRemoto(reduzida, plano.getTokensRestantes(), calc);
+                break;
+            default:
+                resultado = calcularRemoto(expr, plano.getTokens(), calc);
+                break;
+        }
+        planejador.registrarResultado(plano, System.nanoTime() - inicio);
+        return resultado;
+    }
+
+    private static int calcularRemoto(String expr, int tokens, ICalculadora calc)
+            throws RemoteException {
+        long inicio = System.nanoTime();
+        Resultado resultado = calc.calcularExpressaoResultado(expr);
+        planejador.registrarChamada(tokens, System.nanoTime() - inicio);
+        return valor(resultado);
+    }
+
+    // Erros chegam como código e detalhe no Resultado (sem RemoteException); viram exceção
+    // local para o menu, com o mesmo texto das RemoteException de antes
+    private static int valor(Resultado r) {
+        if (!r.isOk()) {
+            throw new IllegalArgumentException(r.getCodigo() == Resultado.DIVISAO_POR_ZERO
+                    ? r.mensagem()
+                    : "Expressão inválida: " + r.mensagem());
+        }
+        return r.getValor();
+    }
+
     // **** Parsing reutilizado (mesma lógica do servidor) ****
 
     private static List<String> tokenize(String s) {
@@ -134,7 +290,7 @@ public class CalculadoraCliente {
         List<String> out=new ArrayList<>();
         Stack<String> st=new Stack<>();
         for (String t: tokens) {
-            if (t.matches("\\d+")) out.add(t);
+            if (Calculadora.isInteiro(t)) out.add(t);
             else if (isOp(t)) {
                 while (!st.isEmpty() && isOp(st.peek())
                        && prec(st.peek())>=prec(t)) {
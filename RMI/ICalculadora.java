@@ -34,4 +34,39 @@ public interface ICalculadora extends Remote {
      * Exemplo: "(10 + 15) * 4"
      */
     public int calcularExpressao(String expressao) throws RemoteException;
+
+    /**
+     * Como divisao, mas divisão por zero volta como Resultado com código de erro
+     * em vez de RemoteException (sem stack trace para preencher e serializar).
+     */
+    public Resultado divisaoResultado(int a, int b) throws RemoteException;
+
+    /**
+     * Como calcularExpressao, mas expressão inválida volta como Resultado
+     * com código de erro em vez de RemoteException.
+     */
+    public Resultado calcularExpressaoResultado(String expressao) throws RemoteException;
+
+    /**
+     * Sessão incremental: envia a expressão uma única vez e devolve o id da sessão.
+     * Uma expressão inválida também abre a sessão (pode ser corrigida com edições).
+     */
+    public long abrirSessao(String expressao) throws RemoteException;
+
+    /**
+     * Valor atual da expressão da sessão.
+     * Lança RemoteException se a expressão for inválida ou a sessão não existir.
+     */
+    public int resultadoSessao(long id) throws RemoteException;
+
+    /**
+     * Substitui {@code comprimento} caracteres a partir de {@code offset} pelo texto
+     * {@code substituicao} e devolve o novo valor. Só o trecho afetado é reinterpretado.
+     */
+    public int editarSessao(long id, int offset, int comprimento, String substituicao) throws RemoteException;
+
+    /**
+     * Encerra a sessão e libera a árvore guardada no servidor.
+     */
+    public void fecharSessao(long id) throws RemoteException;
 }
@@ -0,0 +1,104 @@
+package RMI;
+
+import java.io.Serializable;
+
+/**
+ * Resultado de uma operação remota: o valor ou um código de erro.
+ *
+ * Alternativa às exceções para erros do usuário (divisão por zero, expressão
+ * inválida): uma RemoteException carrega stack trace, que é preenchido no
+ * servidor, serializado e reconstruído no cliente. Este objeto leva um int, um
+ * byte e, quando houver, o detalhe do erro (ex.: o caractere inválido); a
+ * mensagem é montada no cliente a partir do código e do detalhe.
+ */
+public final class Resultado implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final byte OK = 0;
+    public static final byte DIVISAO_POR_ZERO = 1;
+    public static final byte CARACTERE_INVALIDO = 2;
+    public static final byte PARENTESES_DESBALANCEADOS = 3;
+    public static final byte OPERANDO_AUSENTE = 4;
+    public static final byte OPERADOR_INVALIDO = 5;
+    public static final byte NUMERO_INVALIDO = 6;
+    public static final byte EXPRESSAO_MALFORMADA = 7;
+    public static final byte EXPRESSAO_NULA = 8;
+
+    private static final Resultado[] ERROS = new Resultado[EXPRESSAO_NULA + 1];
+    static {
+        for (byte c = DIVISAO_POR_ZERO; c <= EXPRESSAO_NULA; c++) ERROS[c] = new Resultado(0, c);
+    }
+
+    private final int valor;
+    private final byte codigo;
+    private final String detalhe;
+
+    private Resultado(int valor, byte codigo) {
+        this(valor, codigo, null);
+    }
+
+    private Resultado(int valor, byte codigo, String detalhe) {
+        this.valor = valor;
+        this.codigo = codigo;
+        this.detalhe = detalhe;
+    }
+
+    public static Resultado ok(int valor) {
+        return new Resultado(valor, OK);
+    }
+
+    /** Resultado de erro (instâncias compartilhadas, uma por código). */
+    public static Resultado erro(byte codigo) {
+        return ERROS[codigo];
+    }
+
+    /** Resultado de erro com detalhe (ex.: o caractere ou token inválido); sem detalhe, o compartilhado. */
+    public static Resultado erro(byte codigo, String detalhe) {
+        return detalhe == null ? ERROS[codigo] : new Resultado(0, codigo, detalhe);
+    }
+
+    public boolean isOk() { return codigo == OK; }
+
+    public byte getCodigo() { return codigo; }
+
+    /** Detalhe do erro (null se OK ou se o código já diz tudo). */
+    public String getDetalhe() { return detalhe; }
+
+    /** Valor da operação; lança IllegalStateException se for um erro. */
+    public int getValor() {
+        if (codigo != OK) throw new IllegalStateException(mensagem());
+        return valor;
+    }
+
+    /** Descrição do erro, com o detalhe quando houver (null se OK). */
+    public String mensagem() {
+        String m = mensagem(codigo);
+        return detalhe == null || m == null ? m : m + ": " + detalhe;
+    }
+
+    static String mensagem(byte codigo) {
+        switch (codigo) {
+            case OK: return null;
+            case DIVISAO_POR_ZERO: return "Divisão por zero não permitida.";
+            case CARACTERE_INVALIDO: return "Caractere inválido";
+            case PARENTESES_DESBALANCEADOS: return "Parênteses desbalanceados";
+            case OPERANDO_AUSENTE: return "Operando ausente";
+            case OPERADOR_INVALIDO: return "Operador inválido";
+            case NUMERO_INVALIDO: return "Número fora do intervalo de int";
+            case EXPRESSAO_MALFORMADA: return "Erro ao avaliar expressão.";
+            case EXPRESSAO_NULA: return "Expressão nula";
+            default: return "Erro desconhecido (" + codigo + ")";
+        }
+    }
+
+    // Na desserialização, erros sem detalhe voltam a ser as instâncias compartilhadas
+    private Object readResolve() {
+        return codigo != OK && detalhe == null && codigo >= 0 && codigo < ERROS.length ? ERROS[codigo] : this;
+    }
+
+    @Override
+    public String toString() {
+        return codigo == OK ? String.valueOf(valor) : mensagem();
+    }
+}
@@ -0,0 +1,280 @@
+package Socket;
+import java.util.Arrays;
+
+/**
+ * Avaliador de expressões que recebe um caractere por vez: tokeniza, aplica o
+ * shunting-yard e avalia cada saída do RPN na hora, sem guardar a expressão
+ * nem a lista de tokens. A memória é limitada pela profundidade das pilhas de
+ * operadores e de valores (até {@code profundidadeMaxima}) e pelo maior número
+ * ({@link #TOKEN_MAXIMO} caracteres); passar disso rejeita a expressão.
+ *
+ * Produz o mesmo valor e as mesmas mensagens de Calculadora.avaliarExpressao,
+ * inclusive na prioridade entre erros: lá a tokenização inteira vem antes do
+ * shunting-yard, que vem antes da avaliação. Aqui um erro de shunting-yard ou
+ * de avaliação fica guardado e a entrada continua sendo varrida, porque um
+ * caractere inválido mais adiante ainda teria precedência.
+ */
+public class AvaliadorEmFluxo {
+
+    /** Maior número (ou token inesperado) aceito, em caracteres. */
+    public static final int TOKEN_MAXIMO = 1024;
+
+    private static final int NENHUM = 0, OPERADOR = 1, ABRE = 2, OUTRO = 3;
+
+    private final int profundidadeMaxima;
+    private final char[] token = new char[TOKEN_MAXIMO];
+    private char[] operadores = new char[16];
+    private double[] valores = new double[16];
+
+    private int tamToken;
+    private boolean emNumero;
+    private int ultimo;            // tipo do último token, para o '-' unário
+    private boolean iniciado;      // já passou de um char > ' ' (trim do início)
+    private char controlePendente; // char <= ' ' não branco: só é erro se vier algo depois (trim do fim)
+    private int nOperadores, nValores;
+    private int tokens;
+
+    private String erroToken;      // tokenização: vence qualquer outro erro
+    private String erroShunting;
+    private String erroAvaliacao;
+    private boolean erroAritmetico;
+    private String rejeicao;
+
+    public AvaliadorEmFluxo(int profundidadeMaxima) {
+        this.profundidadeMaxima = profundidadeMaxima;
+    }
+
+    /** Limite configurado por calc.expressao.profundidade.maxima (padrão 1000). */
+    public static AvaliadorEmFluxo doSistema() {
+        return new AvaliadorEmFluxo(Integer.getInteger("calc.expressao.profundidade.maxima", 1000));
+    }
+
+    /**
+     * Maior expressão, em caracteres, que nunca esbarra nos limites: a profundidade
+     * só é excedida com mais de {@code profundidadeMaxima} operadores/parênteses e
+     * um número só é rejeitado com mais de TOKEN_MAXIMO caracteres.
+     */
+    public int getTamanhoSempreAceito() {
+        return Math.min(profundidadeMaxima, TOKEN_MAXIMO);
+    }
+
+    public void reiniciar() {
+        tamToken = 0;
+        emNumero = false;
+        ultimo = NENHUM;
+        iniciado = false;
+        controlePendente = 0;
+        nOperadores = 0;
+        nValores = 0;
+        tokens = 0;
+        erroToken = erroShunting = erroAvaliacao = rejeicao = null;
+        erroAritmetico = false;
+    }
+
+    /** Consome um caractere; devolve false quando o restante da entrada já não muda o resultado. */
+    public boolean aceitar(char c) {
+        if (erroToken != null || rejeicao != null) return false;
+        if (c <= ' ') {
+            if (!iniciado) return true;
+            if (emNumero) fecharNumero();
+            if (!Character.isWhitespace(c) && controlePendente == 0) controlePendente = c;
+            return rejeicao == null;
+        }
+        iniciado = true;
+        if (controlePendente != 0) {
+            erroToken = "Token invalido: '" + controlePendente + "'";
+            return false;
+        }
+        if (emNumero) {
+            if (Character.isDigit(c) || c == '.') {
+                if (tamToken == TOKEN_MAXIMO) {
+                    rejeicao = "numero com mais de " + TOKEN_MAXIMO + " caracteres";
+                    return false;
+                }
+                token[tamToken++] = c;
+                return true;
+            }
+            fecharNumero();
+            if (rejeicao != null) return false;
+        }
+        if (Character.isWhitespace(c)) return true;
+        switch (c) {
+            case '(':
+                tokens++;
+                ultimo = ABRE;
+                if (erroShunting == null) empilharOperador('(');
+                break;
+            case ')':
+                tokens++;
+                ultimo = OUTRO;
+                if (erroShunting == null) fecharParenteses();
+                break;
+            case '+': case '*': case '/':
+                tokens++;
+                ultimo = OPERADOR;
+                if (erroShunting == null) operador(c);
+                break;
+            case '-':
+                if (ultimo == NENHUM || ultimo == OPERADOR || ultimo == ABRE) {
+                    emNumero = true; // sinal de número (unário)
+                    token[0] = '-';
+                    tamToken = 1;
+                } else {
+                    tokens++;
+                    ultimo = OPERADOR;
+                    if (erroShunting == null) operador('-');
+                }
+                break;
+            default:
+                if (Character.isDigit(c) || c == '.') {
+                    emNumero = true;
+                    token[0] = c;
+                    tamToken = 1;
+                } else {
+                    erroToken = "Token invalido: '" + c + "'";
+                    return false;
+                }
+        }
+        return rejeicao == null;
+    }
+
+    /** Fim da expressão: esvazia a pilha de operadores e confere o resultado. */
+    public void terminar() {
+        if (erroToken != null || rejeicao != null) return;
+        if (emNumero) fecharNumero();
+        while (erroShunting == null && nOperadores > 0) {
+            char op = operadores[--nOperadores];
+            if (op == '(') erroShunting = "Mismatched parentheses";
+            else saida(op);
+        }
+        if (erroShunting == null && erroAvaliacao == null && nValores != 1) {
+            erroAvaliacao = "RPN produziu mais de um valor";
+        }
+    }
+
+    /** Expressão rejeitada por exceder os limites de memória (null se não foi). */
+    public String getRejeicao() { return rejeicao; }
+
+    /** Mensagem de erro da avaliação, como a da exceção de Calculadora.avaliarExpressao (null se OK). */
+    public String getErro() {
+        if (rejeicao != null) return rejeicao;
+        if (erroToken != null) return erroToken;
+        if (erroShunting != null) return erroShunting;
+        return erroAvaliacao;
+    }
+
+    /** true se o erro é aritmético (ArithmeticException em Calculadora, ex.: divisão por zero). */
+    public boolean isErroAritmetico() {
+        return rejeicao == null && erroToken == null && erroShunting == null && erroAritmetico;
+    }
+
+    /** Tokens vistos até agora, contados como a tokenização de Calculadora. */
+    public int getTokens() {
+        return tokens;
+    }
+
+    public double getResultado() {
+        return valores[0];
+    }
+
+    // Token de número completo: número válido, '-' sozinho (operador) ou token inesperado
+    private void fecharNumero() {
+        emNumero = false;
+        tokens++;
+        if (tamToken == 1 && token[0] == '-') {
+            ultimo = OPERADOR;
+            if (erroShunting == null) operador('-');
+            return;
+        }
+        ultimo = OUTRO;
+        if (erroShunting != null) return;
+        if (!numeroValido()) {
+            erroShunting = "Token inesperado: " + new String(token, 0, tamToken);
+            return;
+        }
+        if (erroAvaliacao != null) return;
+        empilharValor(Double.parseDouble(new String(token, 0, tamToken)));
+    }
+
+    // Mesmo critério de Calculadora.isNumber
+    private boolean numeroValido() {
+        int i = token[0] == '-' ? 1 : 0;
+        boolean digito = false, ponto = false;
+        for (; i < tamToken; i++) {
+            char c = token[i];
+            if (c >= '0' && c <= '9') digito = true;
+            else if (c == '.' && !ponto) ponto = true;
+            else return false;
+        }
+        return digito;
+    }
+
+    // + - * / são todos associativos à esquerda
+    private void operador(char op) {
+        while (nOperadores > 0 && operadores[nOperadores - 1] != '('
+                && precedencia(op) <= precedencia(operadores[nOperadores - 1])) {
+            saida(operadores[--nOperadores]);
+        }
+        empilharOperador(op);
+    }
+
+    private void fecharParenteses() {
+        while (nOperadores > 0 && operadores[nOperadores - 1] != '(') saida(operadores[--nOperadores]);
+        if (nOperadores == 0) {
+            erroShunting = "Mismatched parentheses";
+            return;
+        }
+        nOperadores--;
+    }
+
+    private static int precedencia(char op) {
+        return op == '+' || op == '-' ? 1 : 2;
+    }
+
+    // Um operador que sairia para o RPN é avaliado na hora
+    private void saida(char op) {
+        if (erroAvaliacao != null) return;
+        if (nValores < 2) {
+            erroAvaliacao = "RPN invalido";
+            return;
+        }
+        double b = valores[--nValores];
+        double a = valores[nValores - 1];
+        double res;
+        switch (op) {
+            case '+': res = a + b; break;
+            case '-': res = a - b; break;
+            case '*': res = a * b; break;
+            default:
+                if (b == 0.0) {
+                    erroAvaliacao = "Divisao por zero";
+                    erroAritmetico = true;
+                    return;
+                }
+                res = a / b;
+        }
+        valores[nValores - 1] = res;
+    }
+
+    private void empilharOperador(char op) {
+        if (nOperadores == profundidadeMaxima) {
+            rejeicao = "profundidade maxima de " + profundidadeMaxima + " excedida";
+            return;
+        }
+        if (nOperadores == operadores.length) {
+            operadores = Arrays.copyOf(operadores, Math.min(operadores.length * 2, profundidadeMaxima));
+        }
+        operadores[nOperadores++] = op;
+    }
+
+    private void empilharValor(double v) {
+        if (nValores > profundidadeMaxima) {
+            rejeicao = "profundidade maxima de " + profundidadeMaxima + " excedida";
+            return;
+        }
+        if (nValores == valores.length) {
+            valores = Arrays.copyOf(valores, Math.min(valores.length * 2, profundidadeMaxima + 1));
+        }
+        valores[nValores++] = v;
+    }
+}
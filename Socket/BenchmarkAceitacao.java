@@ -0,0 +1,86 @@
+package Socket;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mede conexões por segundo e latência do servidor TCP (uma conexão por
+ * requisição) com 1 até N sockets de escuta SO_REUSEPORT.
+ *
+ *    java Socket.BenchmarkAceitacao [N maximo] [clientes] [segundos por rodada]
+ *
+ * Sobe o CalculadoraServerReusePort no próprio processo (porta 9190) para cada
+ * N, com os núcleos divididos entre os grupos, e dispara op 1 a partir de
+ * {@code clientes} threads, cada uma abrindo uma conexão por chamada.
+ * N máximo padrão = núcleos da máquina.
+ */
+public class BenchmarkAceitacao {
+
+    private static final int PORTA = 9190;
+
+    public static void main(String[] args) throws Exception {
+        int nProc = Runtime.getRuntime().availableProcessors();
+        int maximo = args.length > 0 ? Integer.parseInt(args[0]) : nProc;
+        int clientes = args.length > 1 ? Integer.parseInt(args[1]) : 2 * nProc;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        Calculadora calc = new Calculadora();
+
+        System.out.printf(Locale.ROOT, "%d nucleos, %d clientes, %d s por rodada%n", nProc, clientes, segundos);
+        System.out.printf(Locale.ROOT, "%-3s %8s %14s %10s %10s %10s%n", "N", "workers", "conexoes/s", "media(us)", "p50(us)", "p99(us)");
+        for (int grupos = 1; grupos <= maximo; grupos++) {
+            int workersPorGrupo = Math.max(1, nProc / grupos);
+            try (CalculadoraServerReusePort servidor = new CalculadoraServerReusePort(calc, PORTA, grupos, workersPorGrupo)) {
+                Thread t = new Thread(servidor, "servidor-benchmark");
+                t.setDaemon(true);
+                t.start();
+                medir(grupos, workersPorGrupo, clientes, 1, segundos); // aquecimento
+                medir(grupos, workersPorGrupo, clientes, segundos, segundos);
+            }
+        }
+    }
+
+    // Roda os clientes por 'duracao' segundos; imprime a linha se for a rodada medida
+    static void medir(int grupos, int workersPorGrupo, int clientes, int duracao, int segundos) throws Exception {
+        AtomicBoolean parar = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(clientes);
+        List<Future<long[]>> resultados = new ArrayList<>();
+        for (int c = 0; c < clientes; c++) {
+            resultados.add(pool.submit(() -> {
+                long[] amostras = new long[1024];
+                int n = 0;
+                while (!parar.get()) {
+                    long t0 = System.nanoTime();
+                    String r = CalculadoraClientSocket.chamadaTcp("127.0.0.1", PORTA, 1, "2", "3");
+                    long dt = System.nanoTime() - t0;
+                    if (!"5.0".equals(r)) throw new IOException("resposta inesperada: " + r);
+                    if (n == amostras.length) amostras = Arrays.copyOf(amostras, n * 2);
+                    amostras[n++] = dt;
+                }
+                return Arrays.copyOf(amostras, n);
+            }));
+        }
+        long inicio = System.nanoTime();
+        Thread.sleep(duracao * 1000L);
+        parar.set(true);
+        long[] todas = new long[0];
+        for (Future<long[]> f : resultados) {
+            long[] a = f.get();
+            int antes = todas.length;
+            todas = Arrays.copyOf(todas, antes + a.length);
+            System.arraycopy(a, 0, todas, antes, a.length);
+        }
+        long total = System.nanoTime() - inicio;
+        pool.shutdown();
+        if (duracao != segundos || todas.length == 0) return;
+
+        Arrays.sort(todas);
+        double soma = 0;
+        for (long v : todas) soma += v;
+        System.out.printf(Locale.ROOT, "%-3d %8d %14.0f %10.1f %10.1f %10.1f%n", grupos, grupos * workersPorGrupo,
+                todas.length / (total / 1e9),
+                soma / todas.length / 1000.0,
+                todas[todas.length / 2] / 1000.0,
+                todas[(int) (todas.length * 0.99)] / 1000.0);
+    }
+}
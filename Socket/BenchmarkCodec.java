@@ -0,0 +1,69 @@
+package Socket;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Mede bytes alocados e tempo por requisição no caminho de decodificação/codificação
+ * do servidor socket, sem rede: caminho antigo (BufferedReader + readLine +
+ * Double.parseDouble + concatenação) contra o CodecRequisicao.
+ *
+ *    java Socket.BenchmarkCodec [iteracoes]
+ *
+ * A alocação vem de com.sun.management.ThreadMXBean.getThreadAllocatedBytes,
+ * o mesmo contador usado pelo perfil gc do JMH.
+ */
+public class BenchmarkCodec {
+
+    interface Caminho {
+        void atender(InputStream in, OutputStream out) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iteracoes = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Calculadora calc = new Calculadora();
+        CodecRequisicao codec = new CodecRequisicao();
+
+        Caminho antigo = (in, out) -> {
+            BufferedReader socketEntrada = new BufferedReader(new InputStreamReader(in));
+            DataOutputStream socketOutput = new DataOutputStream(out);
+            String operacaoStr = socketEntrada.readLine();
+            String oper1 = socketEntrada.readLine();
+            String oper2 = socketEntrada.readLine();
+            int operacao = Integer.parseInt(operacaoStr.trim());
+            String result = operacao == 1
+                    ? "" + calc.soma(Double.parseDouble(oper1), Double.parseDouble(oper2))
+                    : "" + calc.divisao(Double.parseDouble(oper1), Double.parseDouble(oper2));
+            socketOutput.writeBytes(result + "\n");
+            socketOutput.flush();
+        };
+        Caminho novo = (in, out) -> {
+            codec.lerRequisicao(in);
+            codec.processar(calc);
+            codec.escrever(out);
+        };
+
+        String[][] casos = { { "soma", "1\n12.5\n30\n" }, { "divisao", "4\n10\n3\n" } };
+        System.out.printf(Locale.ROOT, "%-8s %-8s %14s %10s%n", "caminho", "op", "bytes/req", "ns/req");
+        for (String[] caso : casos) {
+            medir("antigo", caso[0], antigo, caso[1], iteracoes);
+            medir("codec", caso[0], novo, caso[1], iteracoes);
+        }
+    }
+
+    static void medir(String nome, String op, Caminho caminho, String requisicao, int iteracoes) throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        ByteArrayInputStream in = new ByteArrayInputStream(requisicao.getBytes("US-ASCII"));
+        OutputStream out = OutputStream.nullOutputStream();
+
+        for (int i = 0; i < iteracoes; i++) { in.reset(); caminho.atender(in, out); } // aquecimento
+
+        long bytes0 = mx.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteracoes; i++) { in.reset(); caminho.atender(in, out); }
+        long t = System.nanoTime() - t0;
+        long bytes = mx.getThreadAllocatedBytes(tid) - bytes0;
+        System.out.printf(Locale.ROOT, "%-8s %-8s %14.1f %10.1f%n", nome, op, (double) bytes / iteracoes, (double) t / iteracoes);
+    }
+}
@@ -0,0 +1,64 @@
+package Socket;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Benchmark simples de latência e vazão dos transportes da Calculadora.
+ * Requer o servidor no ar com UDP e memória compartilhada habilitados:
+ *    java Socket.CalculadoraServerSocket --udp --memoria
+ *    java Socket.BenchmarkTransporte [host] [iteracoes]
+ * (o transporte "memoria" só é medido quando host é a própria máquina)
+ *
+ * Mede op 1 (soma) e op 5 (expressão) em sequência, um cliente, e imprime
+ * média, p50, p99 e chamadas por segundo de cada transporte.
+ */
+public class BenchmarkTransporte {
+
+    interface Chamada {
+        String chamar(int op, String oper1, String oper2) throws IOException;
+    }
+
+    private static final String EXPRESSAO = "(10 + 15) * 4 - 8 / 2 + (3 - 1) * 7";
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int iteracoes = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int port = 9090;
+
+        boolean local = host.equals("127.0.0.1") || host.equals("localhost");
+        try (ClienteUDP udp = new ClienteUDP(host, port, 200, 4);
+             ClienteMemoria memoria = local ? new ClienteMemoria(CanalMemoriaCompartilhada.caminhoPadrao()) : null) {
+            Map<String, Chamada> transportes = new LinkedHashMap<>();
+            transportes.put("tcp", (op, a, b) -> CalculadoraClientSocket.chamadaTcp(host, port, op, a, b));
+            transportes.put("udp", udp::chamar);
+            if (memoria != null) transportes.put("shm", memoria::chamar);
+
+            System.out.printf(Locale.ROOT, "%-5s %-4s %10s %10s %10s %12s%n", "transp", "op", "media(us)", "p50(us)", "p99(us)", "chamadas/s");
+            for (Map.Entry<String, Chamada> t : transportes.entrySet()) {
+                medir(t.getKey(), "1", t.getValue(), 1, "2", "3", iteracoes);
+                medir(t.getKey(), "5", t.getValue(), 5, EXPRESSAO, "0", iteracoes);
+            }
+        }
+    }
+
+    static void medir(String nome, String rotulo, Chamada chamada, int op, String a, String b, int iteracoes) throws IOException {
+        // aquecimento
+        for (int i = 0; i < Math.min(iteracoes, 1000); i++) chamada.chamar(op, a, b);
+
+        long[] amostras = new long[iteracoes];
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteracoes; i++) {
+            long t0 = System.nanoTime();
+            String r = chamada.chamar(op, a, b);
+            amostras[i] = System.nanoTime() - t0;
+            if (r == null || r.startsWith("ERRO")) throw new IOException("resposta inesperada: " + r);
+        }
+        long total = System.nanoTime() - inicio;
+        Arrays.sort(amostras);
+        System.out.printf(Locale.ROOT, "%-5s %-4s %10.1f %10.1f %10.1f %12.0f%n", nome, rotulo,
+                total / 1000.0 / iteracoes,
+                amostras[iteracoes / 2] / 1000.0,
+                amostras[(int) (iteracoes * 0.99)] / 1000.0,
+                iteracoes / (total / 1e9));
+    }
+}
@@ -1,13 +1,34 @@
 package Socket;
 import java.util.*;
+
+import Comum.CacheResultados;
+import Comum.EventosFase;
+import Comum.RegistroSessoes;
+import Comum.SessaoExpressao;
 /**
  * Olha eu voltando a escrever Java em 2025...
  * Calculadora: operações básicas + avaliador de expressões.
  * - Métodos: soma, subtracao, multiplicacao, divisao (com tratamento de divisão por zero)
  * - Método calcularExpressao(String): converte infixa -> RPN (Shunting-yard) e avalia RPN.
+ * - Sessões de avaliação incremental (abrirSessao/getSessao/fecharSessao).
+ * - Opcionalmente consulta um cache persistente de resultados (Comum.CacheResultados).
  */
 public class Calculadora {
 
+    /** Domínio do cache de resultados: aritmética double do servidor socket. */
+    public static final long DOMINIO_CACHE = 1;
+
+    private final CacheResultados cache;
+    private final RegistroSessoes sessoes = new RegistroSessoes(SessaoExpressao.Aritmetica.REAL);
+
+    public Calculadora() {
+        this(null);
+    }
+
+    public Calculadora(CacheResultados cache) {
+        this.cache = cache;
+    }
+
     public String sayHello(String nome, String sobrenome) {
         return "Fala " + nome + " " + sobrenome;
     }
@@ -24,6 +45,23 @@ public class Calculadora {
         return oper1 / oper2;
     }
 
+    /**
+     * Abre uma sessão incremental com a expressão e devolve o id.
+     * Lança IllegalStateException se o limite de sessões foi atingido.
+     */
+    public long abrirSessao(String expressao) {
+        return sessoes.abrir(expressao);
+    }
+
+    /** Sessão aberta com o id, ou null se não existe. */
+    public SessaoExpressao getSessao(long id) {
+        return sessoes.obter(id);
+    }
+
+    public boolean fecharSessao(long id) {
+        return sessoes.fechar(id);
+    }
+
     /**
      * Calcula expressão completa dada em notação infixa.
      * Implementação:
@@ -34,12 +72,10 @@ public class Calculadora {
      */
     public String calcularExpressao(String expressao) {
         try {
-            List<String> tokens = tokenize(expressao);
-            List<String> rpn = shuntingYard(tokens);
-            double result = evalRPN(rpn);
+            double result = avaliarExpressao(expressao);
             // Remover .0 desnecessário
             if (result == (long) result) {
-                return String.format("%d", (long) result);
+                return Long.toString((long) result);
             } else {
                 return String.valueOf(result);
             }
@@ -50,6 +86,45 @@ public class Calculadora {
         }
     }
 
+    /**
+     * Avalia a expressão e devolve o valor numérico, sem formatar.
+     * Lança ArithmeticException (divisão por zero) ou outra exceção para expressão inválida.
+     */
+    public double avaliarExpressao(String expressao) {
+        return avaliarExpressao(expressao, null);
+    }
+
+    /**
+     * Idem, informando em {@code tokensContados[0]} quantos tokens a expressão teve
+     * (mantido como estava se o valor veio do cache ou a tokenização falhou).
+     */
+    double avaliarExpressao(String expressao, int[] tokensContados) {
+        if (cache != null && expressao != null) {
+            double guardado = cache.buscar(expressao, Double.NaN);
+            if (!Double.isNaN(guardado)) return guardado;
+        }
+        int tamanho = expressao == null ? 0 : expressao.length();
+
+        EventosFase.Tokenizacao evTok = new EventosFase.Tokenizacao();
+        evTok.begin();
+        List<String> tokens = tokenize(expressao);
+        if (tokensContados != null) tokensContados[0] = tokens.size();
+        if (evTok.shouldCommit()) { evTok.preencher(5, tamanho, tokens.size()); evTok.commit(); }
+
+        EventosFase.ShuntingYard evSy = new EventosFase.ShuntingYard();
+        evSy.begin();
+        List<String> rpn = shuntingYard(tokens);
+        if (evSy.shouldCommit()) { evSy.preencher(5, tamanho, tokens.size()); evSy.commit(); }
+
+        EventosFase.AvaliacaoRPN evRpn = new EventosFase.AvaliacaoRPN();
+        evRpn.begin();
+        double result = evalRPN(rpn);
+        if (evRpn.shouldCommit()) { evRpn.preencher(5, tamanho, tokens.size()); evRpn.commit(); }
+
+        if (cache != null && expressao != null) cache.guardar(expressao, result);
+        return result;
+    }
+
     // ===== Tokenização =====
     private List<String> tokenize(String s) {
         List<String> tokens = new ArrayList<>();
@@ -133,11 +208,21 @@ public class Calculadora {
         return output;
     }
 
-    private boolean isNumber(String s) {
-        try {
-            Double.parseDouble(s);
-            return true;
-        } catch (Exception e) { return false; }
+    /**
+     * Verdadeiro se Double.parseDouble aceitaria o token, sem usar exceção
+     * como controle de fluxo. Cobre o formato que o tokenize produz:
+     * '-' opcional, dígitos ASCII e no máximo um '.', com pelo menos um dígito.
+     */
+    static boolean isNumber(String s) {
+        int i = s.startsWith("-") ? 1 : 0;
+        boolean digito = false, ponto = false;
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') digito = true;
+            else if (c == '.' && !ponto) ponto = true;
+            else return false;
+        }
+        return digito;
     }
 
     private int prec(String op) {
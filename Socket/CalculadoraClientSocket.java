@@ -1,8 +1,12 @@
 package Socket;
 import java.io.*;
+import java.math.BigDecimal;
 import java.net.*;
 import java.util.*;
 
+import Comum.EventosFase;
+import Comum.PlanejadorAdaptativo;
+
 /**
  * Cliente de linha de comando leve para a Calculadora remota.
  *
@@ -14,15 +18,48 @@ import java.util.*;
  *    divisao a b
  *    expressao1 <expr>   -> Abordagem 1: cliente converte para RPN e faz chamadas remotas para cada operação
  *    expressao2 <expr>   -> Abordagem 2: envia a expressão inteira ao servidor (op=5)
+ *    expressao <expr>    -> modo automático: o planejador escolhe Abordagem 1, 2 ou híbrida
+ *    metricas            -> decisões e erro de previsão do planejador
+ *    modo tcp|udp|memoria -> transporte das chamadas (padrão tcp)
  *    exit
  *
  * - Para chamadas remotas de operações básicas, cria uma conexão por operação.
+ * - No modo udp cada chamada é um datagrama com id, com timeout e retransmissão
+ *   (servidor iniciado com --udp).
+ * - No modo memoria as chamadas passam por um arquivo mapeado em memória
+ *   compartilhado com o servidor na mesma máquina (servidor iniciado com --memoria).
  *
  * OBS: alterar HOST se servidor estiver em outra máquina.
  */
 public class CalculadoraClientSocket {
     private static final String HOST = "127.0.0.1"; // ajuste para 192.168.0.11 se necessário
     private static final int PORT = 9090;
+    private static final int UDP_TIMEOUT_MS = 200;
+    private static final int UDP_TENTATIVAS = 4;
+
+    private static ClienteUDP clienteUdp = null; // != null => modo udp
+    private static ClienteMemoria clienteMemoria = null; // != null => modo memoria
+
+    private static final PlanejadorAdaptativo planejador = new PlanejadorAdaptativo();
+    private static final Calculadora calcLocal = new Calculadora();
+
+    // Aritmética local usada pelo planejador para dobrar subárvores (modo híbrido)
+    private static final PlanejadorAdaptativo.Aritmetica<Double> ARITMETICA = new PlanejadorAdaptativo.Aritmetica<Double>() {
+        public Double literal(String token) { return Double.parseDouble(token); }
+        public Double aplicar(String op, Double a, Double b) {
+            switch (op) {
+                case "+": return calcLocal.soma(a, b);
+                case "-": return calcLocal.subtracao(a, b);
+                case "*": return calcLocal.multiplicacao(a, b);
+                case "/": return calcLocal.divisao(a, b);
+            }
+            throw new IllegalArgumentException("Operador desconhecido: " + op);
+        }
+        public String formatar(Double valor) {
+            if (valor.isNaN() || valor.isInfinite()) throw new ArithmeticException("resultado nao representavel");
+            return BigDecimal.valueOf(valor).toPlainString();
+        }
+    };
 
     public static void main(String[] args) {
         System.out.println("Cliente Calculadora (digite 'help' para comandos)");
@@ -62,6 +99,22 @@ public class CalculadoraClientSocket {
                         // Abordagem 2: envia a expressão inteira ao servidor (op=5)
                         handleExpressaoAbordagem2(rest);
                         break;
+                    case "expressao":
+                        // Modo automático: o planejador escolhe a estratégia mais barata
+                        handleExpressaoAdaptativa(rest);
+                        break;
+                    case "sessao":
+                    case "editar":
+                    case "fechar":
+                        // Sessão incremental: expressão enviada uma vez, depois só edições
+                        handleSessao(cmd, rest);
+                        break;
+                    case "metricas":
+                        System.out.println(planejador.metricas());
+                        break;
+                    case "modo":
+                        handleModo(rest.trim().toLowerCase());
+                        break;
                     default:
                         System.out.println("Comando desconhecido. Digite 'help'.");
                 }
@@ -82,6 +135,12 @@ public class CalculadoraClientSocket {
         System.out.println("  divisao a b");
         System.out.println("  expressao1 <expressao>   // cliente avalia por RPN e faz chamadas remotas para cada operacao");
         System.out.println("  expressao2 <expressao>   // envia a expressao para o servidor (op=5) e servidor avalia");
+        System.out.println("  expressao <expressao>    // escolhe automaticamente Abordagem 1, 2 ou hibrida");
+        System.out.println("  sessao <expressao>       // abre sessao incremental no servidor (op=6); mostra id e resultado");
+        System.out.println("  editar id offset comprimento [texto]  // substitui o trecho e reavalia so o que mudou (op=7)");
+        System.out.println("  fechar id                // encerra a sessao (op=8)");
+        System.out.println("  metricas                 // decisoes e erro de previsao do modo automatico");
+        System.out.println("  modo tcp|udp|memoria     // transporte usado nas chamadas remotas");
         System.out.println("  help");
         System.out.println("  exit");
     }
@@ -107,9 +166,39 @@ public class CalculadoraClientSocket {
         System.out.println("Resultado: " + result);
     }
 
-    // Faz uma chamada remota simples (abre socket, envia 3 linhas: op, oper1, oper2; lê 1 linha resultado)
+    // Chamada remota cronometrada: alimenta as estimativas de RTT e custo do servidor do planejador
     private static String remoteCall(int op, String oper1, String oper2) throws IOException {
-        try (Socket clientSocket = new Socket(HOST, PORT)) {
+        long inicio = System.nanoTime();
+        String result = remoteCallDireta(op, oper1, oper2);
+        int tokens = op == 5 ? PlanejadorAdaptativo.contarTokens(oper1)[0] : 3;
+        planejador.registrarChamada(tokens, System.nanoTime() - inicio);
+        return result;
+    }
+
+    private static void handleModo(String modo) throws IOException {
+        if (!modo.equals("tcp") && !modo.equals("udp") && !modo.equals("memoria")) {
+            System.out.println("Uso: modo tcp|udp|memoria");
+            return;
+        }
+        if (clienteUdp != null) { clienteUdp.close(); clienteUdp = null; }
+        if (clienteMemoria != null) { clienteMemoria.close(); clienteMemoria = null; }
+        if (modo.equals("udp")) {
+            clienteUdp = new ClienteUDP(HOST, PORT, UDP_TIMEOUT_MS, UDP_TENTATIVAS);
+        } else if (modo.equals("memoria")) {
+            clienteMemoria = new ClienteMemoria(CanalMemoriaCompartilhada.caminhoPadrao());
+        }
+        System.out.println("Transporte: " + modo);
+    }
+
+    private static String remoteCallDireta(int op, String oper1, String oper2) throws IOException {
+        if (clienteUdp != null) return clienteUdp.chamar(op, oper1, oper2);
+        if (clienteMemoria != null) return clienteMemoria.chamar(op, oper1, oper2);
+        return chamadaTcp(HOST, PORT, op, oper1, oper2);
+    }
+
+    // Faz uma chamada remota simples (abre socket, envia 3 linhas: op, oper1, oper2; lê 1 linha resultado)
+    static String chamadaTcp(String host, int port, int op, String oper1, String oper2) throws IOException {
+        try (Socket clientSocket = new Socket(host, port)) {
             DataOutputStream socketSaidaServer = new DataOutputStream(clientSocket.getOutputStream());
             BufferedReader messageFromServer = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
 
@@ -130,15 +219,30 @@ public class CalculadoraClientSocket {
             System.out.println("Uso: expressao1 <expressao>");
             return;
         }
+        EventosFase.Tokenizacao evTok = new EventosFase.Tokenizacao();
+        evTok.begin();
         List<String> tokens = tokenize(expr);
+        if (evTok.shouldCommit()) { evTok.preencher(5, expr.length(), tokens.size()); evTok.commit(); }
         List<String> rpn;
         try {
+            EventosFase.ShuntingYard evSy = new EventosFase.ShuntingYard();
+            evSy.begin();
             rpn = shuntingYard(tokens);
+            if (evSy.shouldCommit()) { evSy.preencher(5, expr.length(), tokens.size()); evSy.commit(); }
         } catch (Exception e) {
             System.out.println("Erro ao converter para RPN: " + e.getMessage());
             return;
         }
 
+        try {
+            System.out.println("Resultado (Abordagem1): " + avaliarRpnRemotamente(rpn, expr.length()));
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    // Avalia a RPN fazendo uma chamada remota por operador; erros viram IllegalStateException com a mensagem a exibir
+    private static String avaliarRpnRemotamente(List<String> rpn, int tamanhoExpressao) throws IOException {
         Deque<String> stack = new ArrayDeque<>();
         for (String tok : rpn) {
             if (isNumber(tok)) {
@@ -146,31 +250,30 @@ public class CalculadoraClientSocket {
             } else {
                 // operador: sempre realizamos a operação remotamente (exige 2 operandos)
                 if (stack.size() < 2) {
-                    System.out.println("RPN invalido (menos de 2 operandos para operador).");
-                    return;
+                    throw new IllegalStateException("RPN invalido (menos de 2 operandos para operador).");
                 }
                 String b = stack.pop();
                 String a = stack.pop();
                 int opCode = operatorToOpCode(tok);
                 if (opCode == -1) {
-                    System.out.println("Operador desconhecido: " + tok);
-                    return;
+                    throw new IllegalStateException("Operador desconhecido: " + tok);
                 }
+                EventosFase.ChamadaRemota evChamada = new EventosFase.ChamadaRemota();
+                evChamada.begin();
                 String result = remoteCall(opCode, a, b);
-                if (result == null) { System.out.println("Erro: resposta nula do servidor"); return; }
+                if (evChamada.shouldCommit()) { evChamada.preencher(opCode, tamanhoExpressao, rpn.size()); evChamada.commit(); }
+                if (result == null) throw new IllegalStateException("Erro: resposta nula do servidor");
                 if (result.startsWith("ERRO")) {
-                    System.out.println("Servidor retornou erro: " + result);
-                    return;
+                    throw new IllegalStateException("Servidor retornou erro: " + result);
                 }
                 // push resultado (string numerica)
                 stack.push(result);
             }
         }
         if (stack.size() != 1) {
-            System.out.println("Erro: avaliacao RPN produziu múltiplos valores");
-        } else {
-            System.out.println("Resultado (Abordagem1): " + stack.pop());
+            throw new IllegalStateException("Erro: avaliacao RPN produziu múltiplos valores");
         }
+        return stack.pop();
     }
 
     // === Abordagem 2 ===
@@ -184,6 +287,70 @@ public class CalculadoraClientSocket {
         System.out.println("Resultado (Abordagem2): " + result);
     }
 
+    // === Sessão incremental ===
+    // op 6: oper1 = expressão -> "id resultado"; op 7: oper1 = "id offset comprimento",
+    // oper2 = texto substituto -> resultado; op 8: oper1 = id -> "OK"
+    private static void handleSessao(String cmd, String rest) throws IOException {
+        if (cmd.equals("sessao")) {
+            if (rest.trim().isEmpty()) { System.out.println("Uso: sessao <expressao>"); return; }
+            String r = remoteCallDireta(6, rest, "0");
+            int espaco = r.indexOf(' ');
+            if (r.startsWith("ERRO") || espaco < 0) {
+                System.out.println("Resultado: " + r);
+            } else {
+                System.out.println("Sessao " + r.substring(0, espaco) + " - resultado: " + r.substring(espaco + 1));
+            }
+        } else if (cmd.equals("editar")) {
+            String[] p = rest.split("\\s+", 4);
+            if (p.length < 3) { System.out.println("Uso: editar id offset comprimento [texto]"); return; }
+            String texto = p.length > 3 ? p[3] : "";
+            System.out.println("Resultado: " + remoteCallDireta(7, p[0] + " " + p[1] + " " + p[2], texto));
+        } else {
+            if (rest.trim().isEmpty()) { System.out.println("Uso: fechar id"); return; }
+            System.out.println(remoteCallDireta(8, rest.trim(), "0"));
+        }
+    }
+
+    // === Modo automático ===
+    // O planejador estima o custo de cada estratégia e escolhe a mais barata;
+    // o tempo real é registrado para medir o erro de previsão.
+    private static void handleExpressaoAdaptativa(String expr) throws IOException {
+        if (expr.trim().isEmpty()) {
+            System.out.println("Uso: expressao <expressao>");
+            return;
+        }
+        long inicio = System.nanoTime();
+        PlanejadorAdaptativo.Plano plano;
+        try {
+            plano = planejador.planejar(expr, s -> shuntingYard(tokenize(s)));
+        } catch (Exception e) {
+            System.out.println("Erro ao converter para RPN: " + e.getMessage());
+            return;
+        }
+        String result;
+        try {
+            switch (plano.getEstrategia()) {
+                case ABORDAGEM1:
+                    result = avaliarRpnRemotamente(plano.getRpn(), expr.length());
+                    break;
+                case HIBRIDA:
+                    result = remoteCall(5, planejador.reduzir(plano, ARITMETICA), "0");
+                    break;
+                default:
+                    result = remoteCall(5, expr, "0");
+                    break;
+            }
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return;
+        } catch (ArithmeticException ae) {
+            System.out.println("Resultado (" + plano.getEstrategia() + "): ERRO: " + ae.getMessage());
+            return;
+        }
+        planejador.registrarResultado(plano, System.nanoTime() - inicio);
+        System.out.println("Resultado (" + plano.getEstrategia() + "): " + result);
+    }
+
     // Utilitários (tokenize, shunting-yard) — praticamente o mesmo algoritmo da Calculadora.java
     private static List<String> tokenize(String s) {
         List<String> tokens = new ArrayList<>();
@@ -228,7 +395,7 @@ public class CalculadoraClientSocket {
     }
 
     private static boolean isNumber(String s) {
-        try { Double.parseDouble(s); return true; } catch (Exception e) { return false; }
+        return Calculadora.isNumber(s);
     }
 
     private static int prec(String op) {
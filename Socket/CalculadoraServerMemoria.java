@@ -0,0 +1,70 @@
+package Socket;
+import java.io.*;
+import java.nio.file.Path;
+
+import Comum.CacheResultados;
+import Comum.LogAcesso;
+
+/**
+ * Servidor da Calculadora para clientes na mesma máquina, via memória compartilhada
+ * (ver CanalMemoriaCompartilhada). Mesmos códigos de operação e formatos do
+ * protocolo TCP; um cliente por arquivo.
+ */
+public class CalculadoraServerMemoria implements Runnable {
+
+    // cliente que não consome as respostas: desiste da resposta em vez de travar o servidor
+    private static final long ESPERA_ENVIO_NS = 5_000_000_000L;
+
+    private final CanalMemoriaCompartilhada canal;
+    private final Path caminho;
+    private final Calculadora calc;
+    private final CodecRequisicao codec = new CodecRequisicao();
+    private final LogAcesso log = LogAcesso.padrao();
+    private final byte[] requisicao = new byte[CanalMemoriaCompartilhada.TAMANHO_MAXIMO];
+    private volatile boolean ativo = true;
+
+    public CalculadoraServerMemoria(Calculadora calc, Path caminho) throws IOException {
+        this.calc = calc;
+        this.caminho = caminho;
+        this.canal = CanalMemoriaCompartilhada.servidor(caminho);
+    }
+
+    public static void main(String[] args) throws IOException {
+        new CalculadoraServerMemoria(new Calculadora(CacheResultados.doSistema(Calculadora.DOMINIO_CACHE)), CanalMemoriaCompartilhada.caminhoPadrao()).run();
+    }
+
+    @Override
+    public void run() {
+        System.out.println("Servidor em memoria compartilhada no ar - " + caminho);
+        long requisicoes = 0;
+        while (ativo) {
+            int len;
+            try {
+                len = canal.receber(requisicao, 100_000_000L);
+            } catch (IOException e) {
+                // slot corrompido: já foi descartado, segue para o próximo
+                System.err.println("Erro ao receber via memoria compartilhada: " + e.getMessage());
+                continue;
+            }
+            if (len < 0) continue; // timeout: confere se ainda está ativo
+            long id = canal.getIdRecebido();
+            long inicio = System.nanoTime();
+            codec.lerRequisicao(requisicao, 0, len);
+            codec.processar(calc);
+            try {
+                canal.enviar(id, codec.getSaida(), 0, codec.getTamanhoSaida(), ESPERA_ENVIO_NS);
+            } catch (IOException e) {
+                System.err.println("Erro ao responder via memoria compartilhada: " + e.getMessage());
+            }
+            if (log != null) {
+                log.registrar(++requisicoes, codec.getOperacao(), System.nanoTime() - inicio,
+                        len, codec.isErro() ? LogAcesso.ERRO : LogAcesso.OK, 0);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        ativo = false;
+        canal.close();
+    }
+}
@@ -0,0 +1,163 @@
+package Socket;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Comum.CacheResultados;
+import Comum.LogAcesso;
+
+/**
+ * Servidor TCP com vários sockets de escuta na mesma porta (SO_REUSEPORT, Linux).
+ * - Cada grupo tem seu ServerSocket, uma thread aceitadora e um pool próprio de
+ *   workers (com um CodecRequisicao por thread); o kernel distribui as conexões
+ *   novas entre os sockets, então o accept() deixa de ser um ponto único
+ * - Mesmo protocolo e mesmo atendimento do CalculadoraServerSocket (inclusive o
+ *   timeout de leitura calc.socket.timeout.ms)
+ * - Com o pool e a fila de um grupo cheios, a conexão nova é recusada na hora com
+ *   "ERRO: servidor ocupado"; o aceitador nunca atende, para não travar num cliente lento
+ * - A JVM não fixa threads em núcleos: cada grupo recebe sua fatia de núcleos como
+ *   tamanho do pool; para afinidade real, rode o processo sob taskset/cgroups
+ */
+public class CalculadoraServerReusePort implements Runnable, Closeable {
+
+    private static final int FILA_POR_WORKER = 64;
+    private static final long PAUSA_ERRO_ACEITE_MS = 50;
+    private static final byte[] OCUPADO = "ERRO: servidor ocupado\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Calculadora calc;
+    private final LogAcesso log = LogAcesso.padrao();
+    private final AtomicLong conexoes = new AtomicLong();
+    private final ThreadLocal<CodecRequisicao> codecs = ThreadLocal.withInitial(CodecRequisicao::new);
+    private final List<ServerSocket> sockets = new ArrayList<>();
+    private final List<ThreadPoolExecutor> workers = new ArrayList<>();
+    private final List<Thread> aceitadores = new ArrayList<>();
+
+    /**
+     * Abre {@code grupos} sockets na porta, cada um com {@code workersPorGrupo} workers.
+     * Lança IOException se o sistema não suportar SO_REUSEPORT.
+     */
+    public CalculadoraServerReusePort(Calculadora calc, int port, int grupos, int workersPorGrupo) throws IOException {
+        this.calc = calc;
+        try {
+            for (int g = 0; g < grupos; g++) {
+                ServerSocket socket = new ServerSocket();
+                sockets.add(socket);
+                if (!socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    throw new IOException("SO_REUSEPORT nao suportado neste sistema");
+                }
+                socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                socket.bind(new InetSocketAddress(port), 1024);
+
+                // fila limitada: com o pool saturado, execute() lança RejectedExecutionException
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(workersPorGrupo, workersPorGrupo, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(workersPorGrupo * FILA_POR_WORKER), new ThreadPoolExecutor.AbortPolicy());
+                workers.add(pool);
+                Thread aceitador = new Thread(() -> aceitar(socket, pool), "aceitador-" + g);
+                aceitadores.add(aceitador);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 9090;
+        int nProc = Runtime.getRuntime().availableProcessors();
+        int grupos = lerGrupos(args, 0, nProc);
+        if (grupos < 1) {
+            System.err.println("Uso: CalculadoraServerReusePort [N]  (N >= 1 sockets de escuta)");
+            System.exit(1);
+        }
+        new CalculadoraServerReusePort(new Calculadora(CacheResultados.doSistema(Calculadora.DOMINIO_CACHE)),
+                port, grupos, Math.max(1, nProc / grupos)).run();
+    }
+
+    /**
+     * Número de sockets em args[pos], se houver um argumento numérico ali (outra
+     * opção, como --udp, não conta); senão {@code padrao}. Devolve 0 para N < 1 ou
+     * fora do intervalo de int, para o chamador mostrar o uso.
+     */
+    static int lerGrupos(String[] args, int pos, int padrao) {
+        if (pos >= args.length || !args[pos].matches("-?\\d+")) return padrao;
+        try {
+            return Math.max(0, Integer.parseInt(args[pos]));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public int getGrupos() {
+        return sockets.size();
+    }
+
+    /** Inicia os aceitadores e espera até o servidor ser fechado. */
+    @Override
+    public void run() {
+        for (Thread aceitador : aceitadores) aceitador.start();
+        for (Thread aceitador : aceitadores) {
+            try {
+                aceitador.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void aceitar(ServerSocket socket, ExecutorService pool) {
+        while (!socket.isClosed()) {
+            Socket conexao;
+            try {
+                conexao = socket.accept();
+            } catch (IOException e) {
+                if (socket.isClosed()) break;
+                System.err.println("Erro ao aceitar conexao: " + e.getMessage());
+                // ex.: EMFILE; sem a pausa o laço giraria sobre a mesma falha
+                try {
+                    Thread.sleep(PAUSA_ERRO_ACEITE_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            if (pool.isShutdown()) { // fechando: o pool recusaria a conexão
+                try { conexao.close(); } catch (IOException ignored) {}
+                break;
+            }
+            try {
+                pool.execute(() -> atender(conexao));
+            } catch (RejectedExecutionException e) {
+                recusar(conexao);
+            }
+        }
+    }
+
+    // Pool saturado: responde o erro sem ler a requisição e fecha; o cliente pode tentar de novo
+    private static void recusar(Socket conexao) {
+        try (Socket s = conexao) {
+            s.getOutputStream().write(OCUPADO);
+            s.shutdownOutput();
+        } catch (IOException ignored) {
+            // cliente já foi embora
+        }
+    }
+
+    private void atender(Socket conexao) {
+        try (Socket connectionSocket = conexao) {
+            CalculadoraServerSocket.atender(connectionSocket, codecs.get(), calc, log, conexoes.incrementAndGet());
+        } catch (IOException ioeConn) {
+            System.err.println("Erro na conexão: " + ioeConn.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ServerSocket socket : sockets) socket.close();
+        for (ExecutorService pool : workers) pool.shutdown();
+    }
+}
@@ -1,6 +1,13 @@
 package Socket;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import Comum.CacheResultados;
+import Comum.CorpusExpressoes;
+import Comum.EventosFase;
+import Comum.LogAcesso;
 
 /**
  * Servidor TCP para a Calculadora.
@@ -9,77 +16,77 @@ import java.net.*;
  *   operacao: 1 soma, 2 subtracao, 3 multiplicacao, 4 divisao, 5 expressao completa
  * - Caso 5: oper1 contem a expressão infixa inteira (oper2 pode ser ignorado)
  * - Responde com 1 linha contendo o resultado como String
+ * - Fecha a conexão de um cliente que fique calc.socket.timeout.ms (padrão 5000)
+ *   sem enviar dados, para um cliente lento não prender o servidor
+ * - Cada requisição gera um registro no log de acesso assíncrono, salvo com
+ *   -Dcalc.log.desativado=true (ver Comum.LogAcesso)
+ * - Com o argumento --udp, também atende o mesmo protocolo via UDP na porta 9090
+ *   (ver CalculadoraServerUDP)
+ * - Antes de aceitar conexões, pode reavaliar um corpus de expressões gravado
+ *   (aquecimento, ver Comum.CorpusExpressoes)
+ * - Com o argumento --memoria, também atende um cliente local via arquivo mapeado
+ *   em memória (ver CalculadoraServerMemoria)
+ * - Com --reuseport [N], abre N sockets de escuta na porta com SO_REUSEPORT, cada um
+ *   com seu aceitador e workers (ver CalculadoraServerReusePort); N padrão = núcleos
  */
 public class CalculadoraServerSocket {
 
+    static final int TIMEOUT_LEITURA_MS = Integer.getInteger("calc.socket.timeout.ms", 5000);
+
     public static void main(String[] args) {
+        int nProc = Runtime.getRuntime().availableProcessors();
+        int reuseport = Arrays.asList(args).indexOf("--reuseport");
+        int grupos = reuseport >= 0 ? CalculadoraServerReusePort.lerGrupos(args, reuseport + 1, nProc) : 0;
+        if (reuseport >= 0 && grupos < 1) {
+            System.err.println("Uso: CalculadoraServerSocket [--udp] [--memoria] [--reuseport [N]]  (N >= 1 sockets de escuta)");
+            System.exit(1);
+        }
+
         ServerSocket welcomeSocket = null;
-        Calculadora calc = new Calculadora();
+        // cache persistente opcional (-Dcalc.cache.arquivo=...), compartilhado pelos transportes
+        Calculadora calc = new Calculadora(CacheResultados.doSistema(Calculadora.DOMINIO_CACHE));
+        CodecRequisicao codec = new CodecRequisicao();
+        LogAcesso log = LogAcesso.padrao();
+        long conexoes = 0;
         int port = 9090;
 
+        // aquecimento pelo mesmo caminho das requisições op 5 (codec + avaliação): uma passada
+        // com o cache para preenchê-lo, o ciclo com uma Calculadora sem cache
+        CodecRequisicao codecAquecimento = new CodecRequisicao();
+        Calculadora calcSemCache = new Calculadora();
+        CorpusExpressoes.aquecer("Servidor socket",
+                expressao -> aquecer(codecAquecimento, calc, expressao),
+                expressao -> aquecer(codecAquecimento, calcSemCache, expressao));
+
         try {
+            if (Arrays.asList(args).contains("--udp")) {
+                Thread udp = new Thread(new CalculadoraServerUDP(calc, port, Runtime.getRuntime().availableProcessors()), "servidor-udp");
+                udp.setDaemon(true);
+                udp.start();
+            }
+            if (Arrays.asList(args).contains("--memoria")) {
+                Thread memoria = new Thread(new CalculadoraServerMemoria(calc, CanalMemoriaCompartilhada.caminhoPadrao()), "servidor-memoria");
+                memoria.setDaemon(true);
+                memoria.start();
+            }
+
+            if (reuseport >= 0) {
+                // N sockets de escuta na mesma porta, cada um com seu aceitador e workers
+                try (CalculadoraServerReusePort servidor = new CalculadoraServerReusePort(calc, port, grupos, Math.max(1, nProc / grupos))) {
+                    System.out.println("Servidor no ar - porta " + port + " (" + grupos + " sockets SO_REUSEPORT)");
+                    CorpusExpressoes.pronto("Servidor socket");
+                    servidor.run();
+                }
+                return;
+            }
+
             welcomeSocket = new ServerSocket(port);
             System.out.println("Servidor no ar - porta " + port);
+            CorpusExpressoes.pronto("Servidor socket");
 
             while (true) {
                 try (Socket connectionSocket = welcomeSocket.accept()) {
-                    System.out.println("Nova conexão de " + connectionSocket.getRemoteSocketAddress());
-                    BufferedReader socketEntrada = new BufferedReader(new InputStreamReader(connectionSocket.getInputStream()));
-                    DataOutputStream socketOutput = new DataOutputStream(connectionSocket.getOutputStream());
-
-                    String operacaoStr = socketEntrada.readLine();
-                    String oper1 = socketEntrada.readLine();
-                    String oper2 = socketEntrada.readLine();
-
-                    if (operacaoStr == null) {
-                        socketOutput.writeBytes("ERRO: operacao nula\n");
-                        socketOutput.flush();
-                        continue;
-                    }
-
-                    int operacao;
-                    try {
-                        operacao = Integer.parseInt(operacaoStr.trim());
-                    } catch (NumberFormatException nfe) {
-                        socketOutput.writeBytes("ERRO: codigo de operacao invalido\n");
-                        socketOutput.flush();
-                        continue;
-                    }
-
-                    String result;
-                    try {
-                        switch (operacao) {
-                            case 1: // soma
-                                result = "" + calc.soma(Double.parseDouble(oper1), Double.parseDouble(oper2));
-                                break;
-                            case 2: // subtracao
-                                result = "" + calc.subtracao(Double.parseDouble(oper1), Double.parseDouble(oper2));
-                                break;
-                            case 3: // multiplicacao
-                                result = "" + calc.multiplicacao(Double.parseDouble(oper1), Double.parseDouble(oper2));
-                                break;
-                            case 4: // divisao
-                                try {
-                                    result = "" + calc.divisao(Double.parseDouble(oper1), Double.parseDouble(oper2));
-                                } catch (ArithmeticException ae) {
-                                    result = "ERRO: " + ae.getMessage();
-                                }
-                                break;
-                            case 5: // expressão completa - oper1 contém a expressão
-                                result = calc.calcularExpressao(oper1);
-                                break;
-                            default:
-                                result = "ERRO: operacao desconhecida";
-                                break;
-                        }
-                    } catch (Exception e) {
-                        result = "ERRO: entrada invalida (" + e.getMessage() + ")";
-                    }
-
-                    socketOutput.writeBytes(result + "\n");
-                    socketOutput.flush();
-                    System.out.println("Resposta enviada: " + result);
-
+                    atender(connectionSocket, codec, calc, log, ++conexoes);
                     // streams e socket serão fechados pelo try-with-resources ao término do bloco
                 } catch (IOException ioeConn) {
                     System.err.println("Erro na conexão: " + ioeConn.getMessage());
@@ -95,4 +102,42 @@ public class CalculadoraServerSocket {
             }
         }
     }
-}
+
+    private static void aquecer(CodecRequisicao codec, Calculadora calc, String expressao) {
+        byte[] req = ("5\n" + expressao + "\n0\n").getBytes(StandardCharsets.UTF_8);
+        codec.lerRequisicao(req, 0, req.length);
+        codec.processar(calc);
+    }
+
+    /**
+     * Atende uma conexão: lê as 3 linhas, avalia e responde sobre os buffers do codec.
+     * Um cliente que fique mais de calc.socket.timeout.ms sem enviar nada recebe
+     * SocketTimeoutException (uma IOException) em vez de prender a thread.
+     */
+    static void atender(Socket connectionSocket, CodecRequisicao codec, Calculadora calc, LogAcesso log, long seq) throws IOException {
+        long inicio = System.nanoTime();
+        connectionSocket.setSoTimeout(TIMEOUT_LEITURA_MS);
+        EventosFase.LeituraSocket evLeitura = new EventosFase.LeituraSocket();
+        evLeitura.begin();
+        codec.lerRequisicao(connectionSocket.getInputStream());
+        evLeitura.end();
+        codec.processar(calc);
+        if (evLeitura.shouldCommit()) {
+            evLeitura.preencher(codec.getOperacao(), codec.getTamanhoEntrada(), codec.getTokens());
+            evLeitura.commit();
+        }
+
+        EventosFase.EscritaSocket evEscrita = new EventosFase.EscritaSocket();
+        evEscrita.begin();
+        codec.escrever(connectionSocket.getOutputStream());
+        if (evEscrita.shouldCommit()) {
+            evEscrita.preencher(codec.getOperacao(), codec.getTamanhoEntrada(), codec.getTokens());
+            evEscrita.commit();
+        }
+        if (log != null) {
+            log.registrar(seq, codec.getOperacao(), System.nanoTime() - inicio,
+                    codec.getTamanhoEntrada(), codec.isErro() ? LogAcesso.ERRO : LogAcesso.OK,
+                    LogAcesso.origem(connectionSocket.getRemoteSocketAddress()));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package Socket;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Comum.CacheResultados;
+import Comum.LogAcesso;
+
+/**
+ * Servidor UDP para a Calculadora (opcional, ao lado do servidor TCP).
+ * - Uma requisição por datagrama, 4 linhas: id, operacao, oper1, oper2
+ *   (mesmos códigos de operação e formatos do protocolo TCP)
+ * - Resposta em um datagrama, 2 linhas: id, resultado
+ * - O id permite que o cliente retransmita: requisições repetidas da mesma origem
+ *   recebem a resposta guardada (ou são descartadas se ainda estiverem em processamento)
+ * - Um laço de recepção sobre DatagramChannel entrega os datagramas a um pool de workers
+ */
+public class CalculadoraServerUDP implements Runnable {
+
+    /** Maior carga útil de um datagrama UDP sobre IPv4. */
+    public static final int TAMANHO_MAXIMO = 65507;
+    private static final int RESPOSTAS_GUARDADAS = 4096;
+    private static final byte[] PENDENTE = new byte[0];
+
+    private final DatagramChannel canal;
+    private final ExecutorService workers;
+    private final Calculadora calc;
+    private final LogAcesso log = LogAcesso.padrao();
+    private final AtomicLong requisicoes = new AtomicLong();
+    private final ThreadLocal<CodecRequisicao> codecs = ThreadLocal.withInitial(CodecRequisicao::new);
+
+    // origem#id -> resposta já enviada (LRU limitado)
+    private final Map<String, byte[]> respostas = new LinkedHashMap<String, byte[]>(RESPOSTAS_GUARDADAS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > RESPOSTAS_GUARDADAS;
+        }
+    };
+
+    public CalculadoraServerUDP(Calculadora calc, int port, int nWorkers) throws IOException {
+        this.calc = calc;
+        canal = DatagramChannel.open();
+        canal.bind(new InetSocketAddress(port));
+        workers = Executors.newFixedThreadPool(nWorkers);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 9090;
+        new CalculadoraServerUDP(new Calculadora(CacheResultados.doSistema(Calculadora.DOMINIO_CACHE)), port, Runtime.getRuntime().availableProcessors()).run();
+    }
+
+    @Override
+    public void run() {
+        System.out.println("Servidor UDP no ar - porta " + canal.socket().getLocalPort());
+        ByteBuffer buf = ByteBuffer.allocateDirect(TAMANHO_MAXIMO + 1);
+        while (canal.isOpen()) {
+            try {
+                buf.clear();
+                SocketAddress origem = canal.receive(buf);
+                buf.flip();
+                byte[] dados = new byte[buf.remaining()];
+                buf.get(dados);
+                workers.execute(() -> atender(origem, dados));
+            } catch (IOException e) {
+                if (canal.isOpen()) System.err.println("Erro no servidor UDP: " + e.getMessage());
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+    }
+
+    private void atender(SocketAddress origem, byte[] dados) {
+        int fimId = 0;
+        while (fimId < dados.length && dados[fimId] != '\n') fimId++;
+        if (fimId == dados.length) return; // sem id não há como responder
+        String id = new String(dados, 0, fimId, StandardCharsets.UTF_8).trim();
+        String chave = origem + "#" + id;
+
+        byte[] resposta;
+        synchronized (respostas) {
+            resposta = respostas.get(chave);
+            if (resposta == null) respostas.put(chave, PENDENTE);
+        }
+        if (resposta == PENDENTE) return; // retransmissão de requisição em andamento
+        if (resposta == null) {
+            long inicio = System.nanoTime();
+            CodecRequisicao codec = codecs.get();
+            codec.lerRequisicao(dados, fimId + 1, dados.length - fimId - 1);
+            codec.processar(calc);
+            if (log != null) {
+                log.registrar(requisicoes.incrementAndGet(), codec.getOperacao(), System.nanoTime() - inicio,
+                        dados.length, codec.isErro() ? LogAcesso.ERRO : LogAcesso.OK, LogAcesso.origem(origem));
+            }
+            byte[] prefixo = (id + "\n").getBytes(StandardCharsets.UTF_8);
+            resposta = new byte[prefixo.length + codec.getTamanhoSaida()];
+            System.arraycopy(prefixo, 0, resposta, 0, prefixo.length);
+            System.arraycopy(codec.getSaida(), 0, resposta, prefixo.length, codec.getTamanhoSaida());
+            synchronized (respostas) {
+                respostas.put(chave, resposta);
+            }
+        }
+        try {
+            canal.send(ByteBuffer.wrap(resposta), origem);
+        } catch (IOException e) {
+            System.err.println("Erro ao responder " + origem + ": " + e.getMessage());
+        }
+    }
+
+    public void close() throws IOException {
+        canal.close();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,207 @@
+package Socket;
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Canal entre cliente e servidor na mesma máquina via arquivo mapeado em memória.
+ *
+ * O arquivo contém dois anéis single-producer/single-consumer de slots fixos:
+ * requisições (cliente -> servidor) e respostas (servidor -> cliente). Cada slot
+ * guarda o tamanho (int), o id da requisição (long) e a mensagem, no mesmo formato
+ * textual do protocolo TCP (operacao, oper1, oper2 / 1 linha de resultado). O
+ * servidor devolve na resposta o id da requisição, como no protocolo UDP, para o
+ * cliente descartar respostas atrasadas de chamadas que já expiraram.
+ *
+ * Layout: [mágico 8 bytes | 56 livres][anel requisições][anel respostas]
+ * Anel:   [cabeça @0 | pad][cauda @64 | pad][SLOTS x TAMANHO_SLOT]
+ * Cabeça e cauda são contadores crescentes publicados com release/acquire,
+ * em linhas de cache separadas. Quem espera gira um pouco e depois estaciona
+ * em intervalos curtos (não há como acordar outro processo).
+ *
+ * Um cliente por arquivo (SPSC).
+ *
+ * O arquivo fica no tmpdir por padrão, visível para outros usuários: é aberto sem
+ * seguir links simbólicos, criado só com permissão do dono (rw-------) e recusado
+ * se pertencer a outro usuário. O conteúdo lido do outro lado é conferido (tamanho
+ * da mensagem) antes de ser usado.
+ */
+public class CanalMemoriaCompartilhada implements Closeable {
+
+    public static final int TAMANHO_SLOT = 64 * 1024;
+    /** Maior mensagem que cabe em um slot. */
+    public static final int TAMANHO_MAXIMO = TAMANHO_SLOT - 12;
+    private static final int SLOTS = 16;
+    private static final long MAGICO = 0x43414c4353484d32L; // "CALCSHM2"
+    private static final int CABECALHO = 64;
+    private static final int CONTROLE = 128;
+    private static final int TAMANHO_ANEL = CONTROLE + SLOTS * TAMANHO_SLOT;
+    private static final int ANEL_REQUISICOES = CABECALHO;
+    private static final int ANEL_RESPOSTAS = CABECALHO + TAMANHO_ANEL;
+    private static final int TAMANHO_ARQUIVO = CABECALHO + 2 * TAMANHO_ANEL;
+
+    // com um único núcleo girar só atrasa o outro lado: vai direto para yield/park
+    private static final int GIROS = Runtime.getRuntime().availableProcessors() > 1 ? 2000 : 0;
+    private static final int CEDENCIAS = 100;
+    private static final long ESTACIONAMENTO_NS = 20_000;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel arquivo;
+    private final MappedByteBuffer mapa;
+    private final int envio;        // anel em que este lado produz
+    private final int recebimento;  // anel em que este lado consome
+    private long caudaEnvio;
+    private long cabecaRecebimento;
+    private long idRecebido;
+    private final boolean servidor; // só o servidor zera contadores: o lado dele não confere reinício
+
+    private CanalMemoriaCompartilhada(Path caminho, boolean servidor) throws IOException {
+        this.servidor = servidor;
+        arquivo = abrir(caminho, servidor);
+        mapa = arquivo.map(FileChannel.MapMode.READ_WRITE, 0, TAMANHO_ARQUIVO);
+        mapa.order(ByteOrder.nativeOrder());
+        if (servidor) {
+            envio = ANEL_RESPOSTAS;
+            recebimento = ANEL_REQUISICOES;
+            // (re)inicializa: zera contadores antes de publicar o número mágico
+            LONGS.setRelease(mapa, 0, 0L);
+            for (int anel : new int[] { ANEL_REQUISICOES, ANEL_RESPOSTAS }) {
+                LONGS.setRelease(mapa, anel, 0L);
+                LONGS.setRelease(mapa, anel + 64, 0L);
+            }
+            LONGS.setRelease(mapa, 0, MAGICO);
+        } else {
+            if ((long) LONGS.getAcquire(mapa, 0) != MAGICO) {
+                arquivo.close();
+                throw new IOException("canal em memoria nao inicializado pelo servidor: " + caminho);
+            }
+            envio = ANEL_REQUISICOES;
+            recebimento = ANEL_RESPOSTAS;
+        }
+        // retoma de onde o lado anterior parou; respostas pendentes de um cliente antigo são descartadas
+        caudaEnvio = (long) LONGS.getAcquire(mapa, envio + 64);
+        cabecaRecebimento = (long) LONGS.getAcquire(mapa, recebimento + 64);
+        LONGS.setRelease(mapa, recebimento, cabecaRecebimento);
+    }
+
+    // Abre sem seguir links; o servidor cria o arquivo só para o dono. Arquivo de outro usuário é recusado.
+    private static FileChannel abrir(Path caminho, boolean criar) throws IOException {
+        Set<OpenOption> opcoes = new HashSet<>(Arrays.asList(
+                StandardOpenOption.READ, StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS));
+        if (criar) opcoes.add(StandardOpenOption.CREATE);
+        boolean posix = caminho.getFileSystem().supportedFileAttributeViews().contains("posix");
+        FileChannel canal = posix
+                ? FileChannel.open(caminho, opcoes, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : FileChannel.open(caminho, opcoes);
+        try {
+            if (!Files.isRegularFile(caminho, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException("canal em memoria nao e um arquivo comum: " + caminho);
+            }
+            UserPrincipal eu = caminho.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!Files.getOwner(caminho, LinkOption.NOFOLLOW_LINKS).equals(eu)) {
+                throw new IOException("canal em memoria pertence a outro usuario: " + caminho);
+            }
+            if (posix && criar) Files.setPosixFilePermissions(caminho, PosixFilePermissions.fromString("rw-------"));
+        } catch (IOException | UnsupportedOperationException e) {
+            canal.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+        return canal;
+    }
+
+    public static CanalMemoriaCompartilhada servidor(Path caminho) throws IOException {
+        return new CanalMemoriaCompartilhada(caminho, true);
+    }
+
+    public static CanalMemoriaCompartilhada cliente(Path caminho) throws IOException {
+        return new CanalMemoriaCompartilhada(caminho, false);
+    }
+
+    /** Caminho padrão do arquivo (propriedade calc.memoria.arquivo ou tmpdir/calculadora.shm). */
+    public static Path caminhoPadrao() {
+        return Paths.get(System.getProperty("calc.memoria.arquivo",
+                Paths.get(System.getProperty("java.io.tmpdir"), "calculadora.shm").toString()));
+    }
+
+    /**
+     * Publica uma mensagem com o {@code id} dado, esperando até {@code timeoutNs}
+     * (< 0 = sem limite) enquanto o anel estiver cheio. Lança IOException se o outro
+     * lado não consumir nada nesse prazo ou se um servidor novo zerou os contadores.
+     */
+    public void enviar(long id, byte[] dados, int off, int len, long timeoutNs) throws IOException {
+        if (len > TAMANHO_MAXIMO) throw new IOException("mensagem excede o slot (" + len + " bytes)");
+        long limite = timeoutNs < 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutNs;
+        // só este lado escreve a cauda do anel de envio: se mudou, um servidor novo zerou os contadores
+        if (!servidor && (long) LONGS.getAcquire(mapa, envio + 64) != caudaEnvio) throw reiniciado();
+        for (int rodada = 0; caudaEnvio - (long) LONGS.getAcquire(mapa, envio) >= SLOTS; rodada++) {
+            if (rodada > GIROS && System.nanoTime() > limite) {
+                throw new IOException("anel de envio cheio ha " + timeoutNs / 1_000_000
+                        + " ms: o outro lado nao esta consumindo (parado ou reiniciado?)");
+            }
+            esperar(rodada);
+        }
+        int slot = envio + CONTROLE + (int) (caudaEnvio % SLOTS) * TAMANHO_SLOT;
+        mapa.putInt(slot, len);
+        mapa.putLong(slot + 4, id);
+        mapa.put(slot + 12, dados, off, len);
+        LONGS.setRelease(mapa, envio + 64, ++caudaEnvio);
+    }
+
+    /**
+     * Recebe a próxima mensagem em {@code destino} (com pelo menos TAMANHO_MAXIMO bytes)
+     * e devolve o tamanho; devolve -1 se nada chegar em {@code timeoutNs} (< 0 = sem limite).
+     * O id da mensagem fica em {@link #getIdRecebido()}. Lança IOException se um
+     * servidor novo zerou os contadores, ou se o slot trouxer um tamanho inválido
+     * (o slot é descartado e o canal segue utilizável).
+     */
+    public int receber(byte[] destino, long timeoutNs) throws IOException {
+        long limite = timeoutNs < 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutNs;
+        for (int rodada = 0; (long) LONGS.getAcquire(mapa, recebimento + 64) == cabecaRecebimento; rodada++) {
+            if (rodada > GIROS && System.nanoTime() > limite) return -1;
+            esperar(rodada);
+        }
+        // idem para a cabeça do anel de recebimento (senão leríamos slots antigos)
+        if (!servidor && (long) LONGS.getAcquire(mapa, recebimento) != cabecaRecebimento) throw reiniciado();
+        int slot = recebimento + CONTROLE + (int) (cabecaRecebimento % SLOTS) * TAMANHO_SLOT;
+        int len = mapa.getInt(slot);
+        idRecebido = mapa.getLong(slot + 4);
+        if (len < 0 || len > TAMANHO_MAXIMO || len > destino.length) {
+            LONGS.setRelease(mapa, recebimento, ++cabecaRecebimento);
+            throw new IOException("slot com tamanho invalido (" + len + " bytes) descartado");
+        }
+        mapa.get(slot + 12, destino, 0, len);
+        LONGS.setRelease(mapa, recebimento, ++cabecaRecebimento);
+        return len;
+    }
+
+    private static IOException reiniciado() {
+        return new IOException("canal em memoria reiniciado pelo servidor; reabra a conexao");
+    }
+
+    /** Id da última mensagem recebida. */
+    public long getIdRecebido() {
+        return idRecebido;
+    }
+
+    // Gira, depois cede a CPU, depois estaciona por intervalos curtos
+    private static void esperar(int rodada) {
+        if (rodada < GIROS) Thread.onSpinWait();
+        else if (rodada < GIROS + CEDENCIAS) Thread.yield();
+        else LockSupport.parkNanos(ESTACIONAMENTO_NS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        arquivo.close();
+    }
+}
@@ -0,0 +1,43 @@
+package Socket;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cliente da Calculadora via memória compartilhada (servidor na mesma máquina).
+ * Envia as 3 linhas do protocolo (op, oper1, oper2) e lê a linha de resultado.
+ * Cada chamada leva um id; respostas com outro id (de uma chamada anterior que
+ * expirou e foi respondida depois) são descartadas.
+ */
+public class ClienteMemoria implements Closeable {
+    private static final long TIMEOUT_NS = 5_000_000_000L;
+
+    private final CanalMemoriaCompartilhada canal;
+    private final byte[] resposta = new byte[CanalMemoriaCompartilhada.TAMANHO_MAXIMO];
+    private long proximoId = ThreadLocalRandom.current().nextInt(1 << 20);
+
+    public ClienteMemoria(Path caminho) throws IOException {
+        this.canal = CanalMemoriaCompartilhada.cliente(caminho);
+    }
+
+    public synchronized String chamar(int op, String oper1, String oper2) throws IOException {
+        byte[] req = (op + "\n" + oper1 + "\n" + oper2 + "\n").getBytes(StandardCharsets.UTF_8);
+        long id = proximoId++;
+        canal.enviar(id, req, 0, req.length, TIMEOUT_NS);
+        long limite = System.nanoTime() + TIMEOUT_NS;
+        int len;
+        do {
+            long restante = limite - System.nanoTime();
+            len = restante > 0 ? canal.receber(resposta, restante) : -1;
+            if (len < 0) throw new IOException("sem resposta do servidor via memoria compartilhada");
+        } while (canal.getIdRecebido() != id); // resposta atrasada de chamada anterior: descarta
+        if (len > 0 && resposta[len - 1] == '\n') len--;
+        return new String(resposta, 0, len, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
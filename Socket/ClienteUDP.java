@@ -0,0 +1,66 @@
+package Socket;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cliente UDP da Calculadora: uma requisição por datagrama (id, op, oper1, oper2).
+ * Sem resposta dentro do timeout, reenvia o mesmo datagrama (mesmo id) dobrando o
+ * timeout; o servidor descarta duplicatas e reenvia a resposta guardada.
+ */
+public class ClienteUDP implements Closeable {
+    private final DatagramSocket socket;
+    private final InetSocketAddress servidor;
+    private final int timeoutInicialMs;
+    private final int tentativas;
+    private long proximoId = ThreadLocalRandom.current().nextInt(1 << 20);
+    private final byte[] bufResposta = new byte[CalculadoraServerUDP.TAMANHO_MAXIMO];
+
+    public ClienteUDP(String host, int port, int timeoutInicialMs, int tentativas) throws SocketException {
+        this.socket = new DatagramSocket();
+        this.servidor = new InetSocketAddress(host, port);
+        this.timeoutInicialMs = timeoutInicialMs;
+        this.tentativas = tentativas;
+    }
+
+    public synchronized String chamar(int op, String oper1, String oper2) throws IOException {
+        String id = String.valueOf(proximoId++);
+        byte[] req = (id + "\n" + op + "\n" + oper1 + "\n" + oper2 + "\n").getBytes(StandardCharsets.UTF_8);
+        if (req.length > CalculadoraServerUDP.TAMANHO_MAXIMO) {
+            throw new IOException("requisicao excede o tamanho maximo de um datagrama (" + req.length + " bytes)");
+        }
+        DatagramPacket envio = new DatagramPacket(req, req.length, servidor);
+        DatagramPacket recebido = new DatagramPacket(bufResposta, bufResposta.length);
+
+        int timeout = timeoutInicialMs;
+        for (int t = 0; t < tentativas; t++, timeout *= 2) {
+            socket.send(envio);
+            long limite = System.currentTimeMillis() + timeout;
+            try {
+                while (true) {
+                    int restante = (int) (limite - System.currentTimeMillis());
+                    if (restante <= 0) throw new SocketTimeoutException();
+                    socket.setSoTimeout(restante);
+                    recebido.setLength(bufResposta.length);
+                    socket.receive(recebido);
+                    String resposta = new String(recebido.getData(), 0, recebido.getLength(), StandardCharsets.UTF_8);
+                    int nl = resposta.indexOf('\n');
+                    // respostas atrasadas de tentativas anteriores são ignoradas
+                    if (nl > 0 && resposta.substring(0, nl).equals(id)) {
+                        int fim = resposta.indexOf('\n', nl + 1);
+                        return resposta.substring(nl + 1, fim < 0 ? resposta.length() : fim);
+                    }
+                }
+            } catch (SocketTimeoutException ste) {
+                // retransmite
+            }
+        }
+        throw new SocketTimeoutException("sem resposta do servidor UDP apos " + tentativas + " tentativas");
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
@@ -0,0 +1,631 @@
+package Socket;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import Comum.CorpusExpressoes;
+import Comum.EventosFase;
+import Comum.SessaoExpressao;
+
+/**
+ * Codec de requisições/respostas do protocolo textual da Calculadora,
+ * trabalhando direto sobre buffers de bytes reutilizáveis.
+ *
+ * - Lê as 3 linhas da requisição (operacao, oper1, oper2) para um buffer único,
+ *   com os mesmos terminadores do BufferedReader.readLine ('\n', '\r' ou "\r\n")
+ * - Converte números direto dos bytes (caminho rápido exato; formatos incomuns
+ *   caem no Double.parseDouble / Integer.parseInt, com as mesmas mensagens de erro)
+ * - Formata double/long direto no buffer de saída, reproduzindo exatamente
+ *   o texto de "" + double e de calcularExpressao
+ *
+ * Uma expressão (op 5) que não cabe no buffer inicial não é acumulada: o resto da
+ * linha é lido em blocos de tamanho fixo e entregue ao AvaliadorEmFluxo, com
+ * memória limitada pela profundidade da expressão (calc.expressao.profundidade.maxima).
+ * Expressões que cabem no buffer mas já poderiam esbarrar nesses limites também
+ * passam pelo AvaliadorEmFluxo, para a resposta não depender de onde a requisição
+ * foi quebrada. Nas demais operações (e na linha 3 da op 5) o buffer cresce até
+ * calc.requisicao.tamanho.maximo (padrão 1 MiB); passando disso o restante da
+ * requisição é descartado e a resposta é um erro (a op 5 ignora o excesso na
+ * linha 3, que ela não usa).
+ *
+ * Operações 6 a 8 são as sessões de avaliação incremental (ver Comum.SessaoExpressao).
+ *
+ * Uma instância por thread: nada é alocado por requisição no caminho comum das
+ * operações 1 a 4 (a operação 5 ainda cria a String da expressão).
+ */
+public class CodecRequisicao {
+
+    private static final int LINHAS = 3;
+    private static final int TAMANHO_MAXIMO = Integer.getInteger("calc.requisicao.tamanho.maximo", 1 << 20);
+    private static final CorpusExpressoes captura = CorpusExpressoes.capturaDoSistema();
+    private static final double[] POTENCIAS_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private byte[] entrada = new byte[8192];
+    private int tamEntrada;
+    private final int[] ini = new int[LINHAS];
+    private final int[] fim = new int[LINHAS];
+    private int linhas;
+    private int operacao;
+
+    private byte[] saida = new byte[128];
+    private int tamSaida;
+    private int tokens;
+    private final int[] tokensContados = new int[1];
+
+    // op 5 em fluxo: blocos fixos de bytes e chars, decodificados como new String(..., UTF_8)
+    private static final int TAMANHO_BLOCO = 8192;
+    private final byte[] bloco = new byte[TAMANHO_BLOCO];
+    private final ByteBuffer blocoBytes = ByteBuffer.allocate(TAMANHO_BLOCO);
+    private final CharBuffer blocoChars = CharBuffer.allocate(TAMANHO_BLOCO);
+    private final CharsetDecoder decodificador = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final AvaliadorEmFluxo fluxo = AvaliadorEmFluxo.doSistema();
+    private boolean expressaoEmFluxo;
+    private boolean fluxoAtivo;
+    private boolean excedida;      // requisição passou de TAMANHO_MAXIMO e foi descartada
+    private boolean parcial;       // parte da requisição não ficou no buffer (em fluxo ou descartada)
+    private int tamRecebido;       // bytes recebidos, quando parcial
+
+    // ===== Leitura =====
+
+    /** Lê até 3 linhas (ou até o fim do stream) de uma conexão. */
+    public void lerRequisicao(InputStream in) throws IOException {
+        tamEntrada = 0;
+        linhas = 0;
+        expressaoEmFluxo = false;
+        excedida = false;
+        parcial = false;
+        int varridos = 0;
+        int inicioLinha = 0;
+        boolean aposCR = false;
+        while (linhas < LINHAS) {
+            if (varridos == tamEntrada) {
+                if (tamEntrada == entrada.length) {
+                    if (linhas == 1 && ehExpressao()) { // op 5 maior que o buffer: segue em fluxo
+                        lerExpressaoEmFluxo(in, inicioLinha, aposCR);
+                        return;
+                    }
+                    if (entrada.length >= TAMANHO_MAXIMO || linhas == 2 && ehExpressao()) {
+                        descartarRestante(in, inicioLinha, aposCR);
+                        return;
+                    }
+                    byte[] maior = new byte[Math.min(entrada.length * 2, TAMANHO_MAXIMO)];
+                    System.arraycopy(entrada, 0, maior, 0, tamEntrada);
+                    entrada = maior;
+                }
+                int n = in.read(entrada, tamEntrada, entrada.length - tamEntrada);
+                if (n < 0) break;
+                tamEntrada += n;
+                continue;
+            }
+            byte b = entrada[varridos++];
+            if (aposCR) {
+                aposCR = false;
+                if (b == '\n') { inicioLinha = varridos; continue; }
+            }
+            if (b == '\n' || b == '\r') {
+                ini[linhas] = inicioLinha;
+                fim[linhas] = varridos - 1;
+                linhas++;
+                inicioLinha = varridos;
+                aposCR = b == '\r';
+            }
+        }
+        // última linha sem terminador (como readLine no fim do stream)
+        if (linhas < LINHAS && inicioLinha < tamEntrada) {
+            ini[linhas] = inicioLinha;
+            fim[linhas] = tamEntrada;
+            linhas++;
+        }
+    }
+
+    /** Carrega a requisição a partir de um trecho de bytes já recebido (ex.: datagrama). */
+    public void lerRequisicao(byte[] dados, int off, int len) {
+        expressaoEmFluxo = false;
+        excedida = false;
+        parcial = false;
+        if (entrada.length < len) entrada = new byte[Math.max(len, entrada.length * 2)];
+        System.arraycopy(dados, off, entrada, 0, len);
+        tamEntrada = len;
+        linhas = 0;
+        int inicioLinha = 0;
+        for (int i = 0; i < len && linhas < LINHAS; i++) {
+            byte b = entrada[i];
+            if (b == '\n' || b == '\r') {
+                ini[linhas] = inicioLinha;
+                fim[linhas] = i;
+                linhas++;
+                if (b == '\r' && i + 1 < len && entrada[i + 1] == '\n') i++;
+                inicioLinha = i + 1;
+            }
+        }
+        if (linhas < LINHAS && inicioLinha < len) {
+            ini[linhas] = inicioLinha;
+            fim[linhas] = len;
+            linhas++;
+        }
+    }
+
+    private boolean ehExpressao() {
+        try {
+            return lerInt(0) == 5;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lê o restante da expressão (linha 2) em blocos fixos, entregando os chars ao
+     * avaliador em fluxo, e descarta a linha 3 (oper2 não é usado pela op 5).
+     * Os bytes já recebidos da linha 2 estão em entrada[inicioLinha, tamEntrada).
+     */
+    private void lerExpressaoEmFluxo(InputStream in, int inicioLinha, boolean aposCR) throws IOException {
+        expressaoEmFluxo = true;
+        parcial = true;
+        fluxoAtivo = true;
+        fluxo.reiniciar();
+        decodificador.reset();
+        blocoBytes.clear();
+        blocoChars.clear();
+        long recebidos = tamEntrada;
+
+        byte[] buf = entrada;
+        int pos = inicioLinha, lim = tamEntrada;
+        // 0: pula o '\n' de um "\r\n" da linha 1; 1: linha 2; 2: idem após a linha 2; 3: linha 3; 4: fim
+        int etapa = aposCR ? 0 : 1;
+        while (etapa < 4) {
+            if (pos == lim) {
+                int n = in.read(bloco, 0, bloco.length);
+                if (n < 0) break;
+                buf = bloco;
+                pos = 0;
+                lim = n;
+                recebidos += n;
+                continue;
+            }
+            byte b = buf[pos];
+            if (etapa == 0 || etapa == 2) {
+                if (b == '\n') pos++;
+                etapa++;
+            } else if (b == '\n' || b == '\r') {
+                pos++;
+                if (etapa == 1) {
+                    decodificarBloco(true);
+                    etapa = b == '\r' ? 2 : 3;
+                } else {
+                    etapa = 4;
+                }
+            } else {
+                pos++;
+                if (etapa == 1 && fluxoAtivo) {
+                    blocoBytes.put(b);
+                    if (!blocoBytes.hasRemaining()) decodificarBloco(false);
+                }
+            }
+        }
+        if (etapa <= 1) decodificarBloco(true); // fim do stream no meio da expressão
+        fluxo.terminar();
+        linhas = LINHAS;
+        tamRecebido = (int) Math.min(recebidos, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Requisição maior que TAMANHO_MAXIMO (ou linha 3 da op 5 maior que o buffer):
+     * consome sem guardar o resto da linha atual (que começa em entrada[inicioLinha])
+     * e as linhas seguintes. Na op 5 a linha 3 não é usada e é descartada sem erro;
+     * nos demais casos a requisição
+     * fica marcada como excedida e {@code linhas} conta só as linhas completas guardadas.
+     */
+    private void descartarRestante(InputStream in, int inicioLinha, boolean aposCR) throws IOException {
+        boolean semErro = linhas == 2 && ehExpressao();
+        excedida = !semErro;
+        parcial = true;
+        ini[linhas] = fim[linhas] = inicioLinha;
+        long recebidos = tamEntrada;
+        int restantes = LINHAS - linhas;
+        while (restantes > 0) {
+            int n = in.read(bloco, 0, bloco.length);
+            if (n < 0) break;
+            recebidos += n;
+            for (int i = 0; i < n && restantes > 0; i++) {
+                byte b = bloco[i];
+                if (aposCR) {
+                    aposCR = false;
+                    if (b == '\n') continue;
+                }
+                if (b == '\n' || b == '\r') {
+                    restantes--;
+                    aposCR = b == '\r';
+                }
+            }
+        }
+        if (semErro) linhas = LINHAS;
+        tamRecebido = (int) Math.min(recebidos, Integer.MAX_VALUE);
+    }
+
+    // Decodifica os bytes acumulados e entrega os chars ao avaliador
+    private void decodificarBloco(boolean fimDaLinha) {
+        if (!fluxoAtivo) return;
+        blocoBytes.flip();
+        CoderResult r;
+        do {
+            r = decodificador.decode(blocoBytes, blocoChars, fimDaLinha);
+            entregarChars();
+        } while (r.isOverflow());
+        if (fimDaLinha) {
+            while (decodificador.flush(blocoChars).isOverflow()) entregarChars();
+            entregarChars();
+        }
+        blocoBytes.compact();
+    }
+
+    private void entregarChars() {
+        blocoChars.flip();
+        while (fluxoAtivo && blocoChars.hasRemaining()) fluxoAtivo = fluxo.aceitar(blocoChars.get());
+        blocoChars.clear();
+    }
+
+    private String linhaComoString(int i) {
+        return i < linhas ? new String(entrada, ini[i], fim[i] - ini[i], StandardCharsets.UTF_8) : null;
+    }
+
+    // ===== Processamento =====
+
+    /** Avalia a requisição lida e deixa a linha de resposta no buffer de saída. */
+    public void processar(Calculadora calc) {
+        tamSaida = 0;
+        operacao = -1;
+        tokens = 0;
+        if (excedida) {
+            try {
+                operacao = lerInt(0); // só para o log; a linha 1 pode ter sido a descartada
+            } catch (NumberFormatException e) {
+                // operação ausente ou inválida: fica -1
+            }
+            escreverTexto("ERRO: requisicao excede o limite de " + TAMANHO_MAXIMO + " bytes");
+            escreverByte('\n');
+            return;
+        }
+        if (linhas == 0) {
+            escreverTexto("ERRO: operacao nula");
+            escreverByte('\n');
+            return;
+        }
+
+        try {
+            operacao = lerInt(0);
+        } catch (NumberFormatException nfe) {
+            escreverTexto("ERRO: codigo de operacao invalido");
+            escreverByte('\n');
+            return;
+        }
+
+        try {
+            switch (operacao) {
+                case 1: // soma
+                    formatar(1, calc.soma(lerDouble(1), lerDouble(2)));
+                    break;
+                case 2: // subtracao
+                    formatar(2, calc.subtracao(lerDouble(1), lerDouble(2)));
+                    break;
+                case 3: // multiplicacao
+                    formatar(3, calc.multiplicacao(lerDouble(1), lerDouble(2)));
+                    break;
+                case 4: // divisao
+                    double a = lerDouble(1), b = lerDouble(2);
+                    try {
+                        formatar(4, calc.divisao(a, b));
+                    } catch (ArithmeticException ae) {
+                        escreverTexto("ERRO: " + ae.getMessage());
+                    }
+                    break;
+                case 5: // expressão completa - oper1 contém a expressão
+                    if (expressaoEmFluxo) {
+                        escreverResultadoEmFluxo(tamRecebido);
+                    } else {
+                        escreverResultadoExpressao(calc, linhaComoString(1));
+                    }
+                    break;
+                case 6: // abre sessão incremental - oper1 contém a expressão; resposta "id resultado"
+                    abrirSessao(calc, linhaComoString(1));
+                    break;
+                case 7: // edita sessão - oper1 "id offset comprimento", oper2 o texto substituto
+                    editarSessao(calc, linhaComoString(1), 2 < linhas ? linhaComoString(2) : "");
+                    break;
+                case 8: // fecha sessão - oper1 contém o id
+                    if (calc.fecharSessao(Long.parseLong(linhaComoString(1).trim()))) {
+                        escreverTexto("OK");
+                    } else {
+                        escreverTexto("ERRO: sessao inexistente");
+                    }
+                    break;
+                default:
+                    escreverTexto("ERRO: operacao desconhecida");
+                    break;
+            }
+        } catch (Exception e) {
+            tamSaida = 0;
+            escreverTexto("ERRO: entrada invalida (" + e.getMessage() + ")");
+        }
+        escreverByte('\n');
+    }
+
+    private void escreverResultadoExpressao(Calculadora calc, String expressao) {
+        if (captura != null) captura.registrar(expressao);
+        if (expressao != null && expressao.length() > fluxo.getTamanhoSempreAceito()) {
+            // poderia esbarrar nos limites: mesma avaliação de quando não cabe no buffer
+            fluxo.reiniciar();
+            for (int i = 0; i < expressao.length(); i++) {
+                if (!fluxo.aceitar(expressao.charAt(i))) break;
+            }
+            fluxo.terminar();
+            escreverResultadoEmFluxo(expressao.length());
+            return;
+        }
+        double result;
+        tokensContados[0] = 0;
+        try {
+            result = calc.avaliarExpressao(expressao, tokensContados);
+        } catch (ArithmeticException ae) {
+            escreverTexto("ERRO: " + ae.getMessage());
+            return;
+        } catch (Exception e) {
+            escreverTexto("ERRO: expressao invalida (" + e.getMessage() + ")");
+            return;
+        } finally {
+            tokens = tokensContados[0];
+        }
+        escreverValorExpressao(result, expressao.length());
+    }
+
+    // Mesmas respostas de Calculadora.calcularExpressao, a partir do avaliador em fluxo
+    private void escreverResultadoEmFluxo(int tamanhoExpressao) {
+        tokens = fluxo.getTokens();
+        String erro = fluxo.getErro();
+        if (erro == null) {
+            escreverValorExpressao(fluxo.getResultado(), tamanhoExpressao);
+        } else if (fluxo.isErroAritmetico()) {
+            escreverTexto("ERRO: " + erro);
+        } else {
+            escreverTexto("ERRO: expressao invalida (" + erro + ")");
+        }
+    }
+
+    private void escreverValorExpressao(double result, int tamanhoExpressao) {
+        EventosFase.Formatacao ev = new EventosFase.Formatacao();
+        ev.begin();
+        // mesmo critério de Calculadora.calcularExpressao: remove ".0" de inteiros
+        if (result == (long) result) {
+            escreverLong((long) result);
+        } else {
+            escreverDouble(result);
+        }
+        if (ev.shouldCommit()) { ev.preencher(5, tamanhoExpressao, tokens); ev.commit(); }
+    }
+
+    private void abrirSessao(Calculadora calc, String expressao) {
+        if (captura != null) captura.registrar(expressao);
+        SessaoExpressao sessao;
+        long id;
+        try {
+            id = calc.abrirSessao(expressao);
+            sessao = calc.getSessao(id);
+        } catch (IllegalStateException e) {
+            escreverTexto("ERRO: " + e.getMessage());
+            return;
+        }
+        escreverLong(id);
+        escreverByte(' ');
+        escreverResultadoSessao(sessao, -1, 0, null);
+    }
+
+    private void editarSessao(Calculadora calc, String edicao, String substituicao) {
+        String[] partes = edicao.trim().split("\\s+");
+        if (partes.length != 3) {
+            escreverTexto("ERRO: edicao invalida (esperado \"id offset comprimento\")");
+            return;
+        }
+        SessaoExpressao sessao = calc.getSessao(Long.parseLong(partes[0]));
+        if (sessao == null) {
+            escreverTexto("ERRO: sessao inexistente");
+            return;
+        }
+        escreverResultadoSessao(sessao, Integer.parseInt(partes[1]), Integer.parseInt(partes[2]), substituicao);
+    }
+
+    // Aplica a edição (offset >= 0) e escreve o resultado com o mesmo texto da operação 5
+    private void escreverResultadoSessao(SessaoExpressao sessao, int offset, int comprimento, String substituicao) {
+        double result;
+        try {
+            result = offset < 0 ? sessao.resultado() : sessao.editar(offset, comprimento, substituicao);
+        } catch (IndexOutOfBoundsException e) {
+            escreverTexto("ERRO: edicao invalida (" + e.getMessage() + ")");
+            return;
+        } catch (ArithmeticException ae) {
+            escreverTexto("ERRO: " + ae.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            escreverTexto("ERRO: expressao invalida (" + e.getMessage() + ")");
+            return;
+        }
+        if (result == (long) result) {
+            escreverLong((long) result);
+        } else {
+            escreverDouble(result);
+        }
+    }
+
+    // Operações 1 a 4: "a op b" são 3 tokens (mesma conta do planejador do cliente)
+    private void formatar(int op, double result) {
+        tokens = 3;
+        EventosFase.Formatacao ev = new EventosFase.Formatacao();
+        ev.begin();
+        escreverDouble(result);
+        if (ev.shouldCommit()) { ev.preencher(op, (fim[1] - ini[1]) + (fim[2] - ini[2]), tokens); ev.commit(); }
+    }
+
+    // ===== Conversão de números =====
+
+    /** Equivalente a Integer.parseInt(linha.trim()). */
+    int lerInt(int linha) {
+        if (linha >= linhas) return Integer.parseInt(null);
+        int i = ini[linha], f = fim[linha];
+        while (i < f && (entrada[i] & 0xff) <= ' ') i++;
+        while (f > i && (entrada[f - 1] & 0xff) <= ' ') f--;
+        boolean negativo = false;
+        if (i < f && (entrada[i] == '-' || entrada[i] == '+')) { negativo = entrada[i] == '-'; i++; }
+        int n = f - i;
+        if (n == 0 || n > 9) return Integer.parseInt(linhaComoString(linha).trim()); // lança ou trata overflow
+        int v = 0;
+        for (; i < f; i++) {
+            int d = entrada[i] - '0';
+            if (d < 0 || d > 9) return Integer.parseInt(linhaComoString(linha).trim());
+            v = v * 10 + d;
+        }
+        return negativo ? -v : v;
+    }
+
+    /**
+     * Equivalente a Double.parseDouble(linha). Caminho rápido para decimais sem
+     * expoente com até 2^53 de mantissa e até 22 casas: m / 10^k é exato e
+     * corretamente arredondado (ambos representáveis, uma única divisão).
+     */
+    double lerDouble(int linha) {
+        if (linha >= linhas) return Double.parseDouble(null);
+        int i = ini[linha], f = fim[linha];
+        while (i < f && (entrada[i] & 0xff) <= ' ') i++;
+        while (f > i && (entrada[f - 1] & 0xff) <= ' ') f--;
+        boolean negativo = false;
+        if (i < f && (entrada[i] == '-' || entrada[i] == '+')) { negativo = entrada[i] == '-'; i++; }
+        long mantissa = 0;
+        int digitos = 0, casas = 0;
+        boolean ponto = false;
+        for (; i < f; i++) {
+            byte c = entrada[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > (1L << 53)) return Double.parseDouble(linhaComoString(linha));
+                digitos++;
+                if (ponto) casas++;
+            } else if (c == '.' && !ponto) {
+                ponto = true;
+            } else {
+                return Double.parseDouble(linhaComoString(linha)); // expoente, NaN, hex, lixo...
+            }
+        }
+        if (digitos == 0 || casas >= POTENCIAS_10.length) return Double.parseDouble(linhaComoString(linha));
+        double v = (double) mantissa / POTENCIAS_10[casas];
+        return negativo ? -v : v;
+    }
+
+    // ===== Escrita =====
+
+    /** Escreve o mesmo texto de Long.toString(v). */
+    void escreverLong(long v) {
+        if (v == Long.MIN_VALUE) { escreverTexto("-9223372036854775808"); return; }
+        if (v < 0) { escreverByte('-'); v = -v; }
+        garantir(19);
+        int n = 1;
+        for (long t = v; t >= 10; t /= 10) n++;
+        for (int p = tamSaida + n - 1; p >= tamSaida; p--) {
+            saida[p] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        tamSaida += n;
+    }
+
+    /**
+     * Escreve o mesmo texto de Double.toString(v) ("" + v). Caminho rápido para
+     * inteiros e decimais com até 6 casas no intervalo em que Double.toString
+     * não usa notação científica; o restante usa o próprio Double.toString.
+     */
+    void escreverDouble(double v) {
+        double abs = Math.abs(v);
+        if (abs >= 1e-3 && abs < 1e7) {
+            boolean negativo = v < 0;
+            long inteiro = (long) abs;
+            if (inteiro == abs) {
+                if (negativo) escreverByte('-');
+                escreverLong(inteiro);
+                escreverByte('.');
+                escreverByte('0');
+                return;
+            }
+            for (int casas = 1; casas <= 6; casas++) {
+                double escala = POTENCIAS_10[casas];
+                long m = Math.round(abs * escala);
+                if (m / escala == abs) {
+                    if (negativo) escreverByte('-');
+                    escreverLong(m / (long) escala);
+                    escreverByte('.');
+                    long frac = m % (long) escala;
+                    garantir(casas);
+                    for (int p = tamSaida + casas - 1; p >= tamSaida; p--) {
+                        saida[p] = (byte) ('0' + frac % 10);
+                        frac /= 10;
+                    }
+                    tamSaida += casas;
+                    // Double.toString não deixa zeros à direita (ex.: 0.5, não 0.50)
+                    while (saida[tamSaida - 1] == '0' && saida[tamSaida - 2] != '.') tamSaida--;
+                    return;
+                }
+            }
+        } else if (v == 0) {
+            escreverTexto(Double.doubleToRawLongBits(v) < 0 ? "-0.0" : "0.0");
+            return;
+        }
+        escreverTexto(Double.toString(v));
+    }
+
+    /** Mesma semântica de DataOutputStream.writeBytes: apenas o byte baixo de cada char. */
+    void escreverTexto(String s) {
+        garantir(s.length());
+        for (int i = 0; i < s.length(); i++) saida[tamSaida++] = (byte) s.charAt(i);
+    }
+
+    private void escreverByte(char c) {
+        garantir(1);
+        saida[tamSaida++] = (byte) c;
+    }
+
+    private void garantir(int n) {
+        if (tamSaida + n > saida.length) {
+            byte[] maior = new byte[Math.max(saida.length * 2, tamSaida + n)];
+            System.arraycopy(saida, 0, maior, 0, tamSaida);
+            saida = maior;
+        }
+    }
+
+    public void escrever(OutputStream out) throws IOException {
+        out.write(saida, 0, tamSaida);
+        out.flush();
+    }
+
+    public byte[] getSaida() { return saida; }
+
+    /** Código de operação da última requisição processada (-1 se ausente ou inválido). */
+    public int getOperacao() { return operacao; }
+
+    /**
+     * Tokens da última requisição: os da expressão na op 5, 3 nas operações 1 a 4;
+     * 0 quando não houve tokenização (resultado do cache, sessões, erro de leitura).
+     */
+    public int getTokens() { return tokens; }
+
+    /** Bytes recebidos na última requisição. */
+    public int getTamanhoEntrada() { return parcial ? tamRecebido : tamEntrada; }
+
+    /** true se a última resposta foi uma mensagem de erro ("ERRO: ..."). */
+    public boolean isErro() { return tamSaida > 0 && saida[0] == 'E'; }
+
+    /** Tamanho da resposta no buffer, incluindo o '\n' final. */
+    public int getTamanhoSaida() { return tamSaida; }
+}
@@ -0,0 +1,9 @@
+#!/bin/sh
+# Resume os percentis de duração das fases da Calculadora em uma gravação JFR.
+# Uso: jfr/resumir_fases.sh gravacao.jfr [classpath]
+# (classpath padrão: diretório com as classes compiladas, "." se omitido)
+if [ $# -lt 1 ]; then
+    echo "Uso: $0 gravacao.jfr [classpath]" >&2
+    exit 1
+fi
+exec java -cp "${2:-.}" Comum.ResumoFasesJfr "$1"